@@ -2,10 +2,57 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
 import java.awt.geom.Ellipse2D;
-import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
 import java.util.Random;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntPredicate;
+import java.util.zip.CRC32;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
 
 /*
  * AquariumSim - single-file Swing simulation
@@ -20,96 +67,460 @@ import java.util.concurrent.CopyOnWriteArrayList;
  * - Top air band is out-of-water; fish cannot swim into it.
  * - Idle swimming is smooth/gliding with soft depth keeping (no random vertical racing).
  *
- * Keys: A (add mid fish), B (add bottom), G (add algae eater), F (toggle filter), R (reduce algae), P (pause).
+ * Keys: A (add mid fish), B (add bottom), G (add algae eater), F (toggle filter), R (reduce algae), P (pause),
+ *       O (per-phase tick profiler overlay; the same numbers are on JMX as AquariumSim:type=TickProfiler),
+ *       K (save the tank to aquarium.aqc; start from it again with --restore aquarium.aqc),
+ *       I (toggle drawing positions interpolated between ticks).
+ *
+ * Run: java AquariumSim.java [--seed N] [--threads T] [--hud-hz H] [--record FILE] [--restore CKPT]
+ *      java AquariumSim.java --replay FILE [--threads T]   (re-runs a journal headless, verifies the final state)
+ *      java AquariumSim.java --headless [--seed N] [--seconds S] [--fish N] [--threads T]   (no window, faster than real time)
+ *                                   [--restore CKPT] [--checkpoint CKPT [--checkpoint-every S]]
+ *      java AquariumSim.java --bench [--fish 200,2000] [--pellets N] [--poops N] [--corpses N] [--threads 1,4]
+ *                                [--iterations I] [--ticks T] [--frames F] [--seed N]   (step + offscreen paint timings)
+ *      java AquariumSim.java --alloc-check [--seed N] [--fish N] [--threads T]   (exit 1 if a steady-state tick allocates)
+ *      java AquariumSim.java --sweep --out FILE.csv [--hunger-rate 0.5,1,2] [--eat-threshold ..] [--growth ..]
+ *                                [--clean-rate 3,6.5] [--seeds N] [--seconds S] [--threads T] ...   (see ParameterSweep)
  */
 public class AquariumSim extends JFrame {
     public static void main(String[] args) {
+        if (argsContain(args, "--bench")) {
+            runBench(args);
+            return;
+        }
+        if (argsContain(args, "--sweep")) {
+            System.exit(ParameterSweep.run(args) ? 0 : 1);
+        }
+        long seed = argLong(args, "--seed", System.nanoTime());
+        int threads = (int) argLong(args, "--threads", 1);
+        if (argsContain(args, "--alloc-check")) {
+            System.exit(runAllocCheck(seed, (int) argLong(args, "--fish", 200), threads) ? 0 : 1);
+        }
+        String replay = argString(args, "--replay", null);
+        if (replay != null) {
+            System.exit(runReplay(Path.of(replay), threads) ? 0 : 1);
+        }
+        if (argsContain(args, "--headless")) {
+            String restore = argString(args, "--restore", null), checkpoint = argString(args, "--checkpoint", null);
+            runHeadless(seed, argLong(args, "--seconds", 600), (int) argLong(args, "--fish", 0), threads,
+                    restore == null ? null : Path.of(restore), checkpoint == null ? null : Path.of(checkpoint),
+                    argLong(args, "--checkpoint-every", 0));
+            return;
+        }
+        double hudHz = argDoubles(args, "--hud-hz", 4)[0];
+        String record = argString(args, "--record", null), restore = argString(args, "--restore", null);
         SwingUtilities.invokeLater(() -> {
-            AquariumSim sim = new AquariumSim();
+            AquariumSim sim = new AquariumSim(seed, threads, hudHz, record == null ? null : Path.of(record),
+                    restore == null ? null : Path.of(restore));
             sim.setVisible(true);
         });
     }
 
-    public AquariumSim() {
+    public AquariumSim(long seed, int threads, double hudHz, Path recordTo, Path restoreFrom) {
         super("Aquarium Simulation - Decomposition, Appetite, Smooth Gliding");
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setSize(1000, 720);
         setLocationByPlatform(true);
 
-        AquariumPanel panel = new AquariumPanel(960, 620);
+        AquariumEngine engine = null;
+        if (restoreFrom != null) {
+            try {
+                engine = Checkpoint.restore(restoreFrom);
+            } catch (IOException ex) {
+                System.err.println("restore: " + ex.getMessage() + " (starting a new tank)");
+            }
+        }
+        if (engine == null) engine = new AquariumEngine(960, 620, seed);
+        if (threads > 1) engine.setPool(new ForkJoinPool(threads));
+        engine.profiler.register();
+        SimulationLoop sim = new SimulationLoop(engine);
+        if (recordTo != null && engine.tick > 0) {
+            System.err.println("Journal: --record needs a fresh tank (journals replay from the seed), not recording");
+        } else if (recordTo != null) {
+            try {
+                sim.record(new InputJournal.Writer(recordTo, engine.seed, engine.worldW, engine.worldH));
+            } catch (IOException ex) {
+                System.err.println("Journal: cannot record to " + recordTo + ": " + ex);
+            }
+        }
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) { sim.stop(); } // flushes the journal before exit
+        });
+        AquariumPanel panel = new AquariumPanel(sim);
+        panel.setHudRate(hudHz);
         setLayout(new BorderLayout());
         add(panel, BorderLayout.CENTER);
         add(panel.buildHUD(), BorderLayout.SOUTH);
+        sim.start();
     }
-}
 
-/* ===================== Panel / World ===================== */
+    /**
+     * Runs the engine without a window as fast as it will go and prints a one-line summary. With
+     * {@code restoreFrom} it continues a checkpoint (whose seed wins) instead of starting fresh; with
+     * {@code checkpointTo} it saves there every {@code checkpointEvery} simulated seconds (if > 0) and at the end.
+     */
+    static void runHeadless(long seed, long seconds, int extraFish, int threads,
+                            Path restoreFrom, Path checkpointTo, long checkpointEvery) {
+        AquariumEngine engine;
+        try {
+            engine = restoreFrom != null ? Checkpoint.restore(restoreFrom) : new AquariumEngine(960, 620, seed);
+        } catch (IOException ex) {
+            System.err.println("restore: " + ex.getMessage());
+            return;
+        }
+        ForkJoinPool pool = threads > 1 ? new ForkJoinPool(threads) : null;
+        engine.setPool(pool);
+        FishType[] types = FishType.values();
+        for (int i = 0; i < extraFish; i++) engine.addFish(types[i % types.length]);
+
+        long ticks = Math.round(seconds / AquariumEngine.FIXED_DT);
+        long every = checkpointTo != null && checkpointEvery > 0 ? Math.round(checkpointEvery / AquariumEngine.FIXED_DT) : 0;
+        long t0 = System.nanoTime();
+        try {
+            for (long t = 1; t <= ticks; t++) {
+                engine.step();
+                if (every > 0 && t % every == 0 && t < ticks) Checkpoint.save(engine, checkpointTo);
+            }
+            if (checkpointTo != null) Checkpoint.save(engine, checkpointTo);
+        } catch (IOException ex) {
+            System.err.println("checkpoint: " + ex);
+        }
+        double wallSec = (System.nanoTime() - t0) / 1e9;
 
-class AquariumPanel extends JPanel implements ActionListener, MouseListener, MouseMotionListener, KeyListener {
-    // World
-    final int worldW, worldH;
-    final Rectangle tankBounds;
-    final Random rng = new Random();
+        if (pool != null) pool.shutdown();
 
-    // Entities
-    final List<Fish> fish = new CopyOnWriteArrayList<>();
-    final List<Pellet> pellets = new CopyOnWriteArrayList<>();
-    final List<Poop> poops = new CopyOnWriteArrayList<>();
-    final List<Seaweed> seaweeds = new CopyOnWriteArrayList<>();
-    final List<Corpse> corpses = new CopyOnWriteArrayList<>();
+        System.out.printf("seed=%d threads=%d ticks=%d sim=%ds wall=%.2fs (%.0fx real time) fish=%d dirt=%.1f algae=%.1f hash=%016x%n",
+                engine.seed, threads, engine.tick, seconds, wallSec, seconds / Math.max(wallSec, 1e-9),
+                engine.fish.size(), engine.dirt, engine.algaeLevel, engine.stateHash());
+    }
 
-    // Environment
-    boolean filterOn = true;
-    double dirt = 0.0;                 // general water dirt (0..100)
-    double algaeLevel = 0.0;           // bloom severity (0..100)
-    double timeSeconds = 0.0;
-    boolean paused = false;
+    /**
+     * Replays a recorded journal headless at full speed: applies each input at its recorded tick, steps
+     * to the recorded end and compares state hashes. Prints per-phase timings so field reports can be
+     * profiled as-is. Returns false on a hash mismatch or unreadable journal.
+     */
+    static boolean runReplay(Path file, int threads) {
+        try (InputJournal.Reader journal = new InputJournal.Reader(file)) {
+            AquariumEngine engine = new AquariumEngine(journal.worldW, journal.worldH, journal.seed);
+            ForkJoinPool pool = threads > 1 ? new ForkJoinPool(threads) : null;
+            engine.setPool(pool);
+
+            long events = 0, t0 = System.nanoTime();
+            while (journal.next()) {
+                while (engine.tick < journal.tick) engine.step();
+                journal.input.applyTo(engine);
+                events++;
+            }
+            while (engine.tick < journal.endTick) engine.step();
+            double wallSec = (System.nanoTime() - t0) / 1e9;
+            if (pool != null) pool.shutdown();
+
+            long hash = engine.stateHash();
+            boolean complete = journal.endTick >= 0;
+            boolean match = !complete || hash == journal.endHash;
+            System.out.printf("replay %s: seed=%d threads=%d ticks=%d events=%d wall=%.2fs (%.0fx real time) fish=%d hash=%016x %s%n",
+                    file, journal.seed, threads, engine.tick, events, wallSec,
+                    engine.tick * AquariumEngine.FIXED_DT / Math.max(wallSec, 1e-9), engine.fish.size(), hash,
+                    !complete ? "(journal truncated; nothing to compare)" : match ? "MATCH" : String.format("MISMATCH (recorded %016x)", journal.endHash));
+            System.out.printf("%-10s %9s %9s %9s   (us, last %d ticks)%n", "phase", "p50", "p99", "max", TickProfiler.WINDOW);
+            for (int p = 0; p < TickProfiler.PHASES.length; p++) {
+                System.out.printf("%-10s %9.1f %9.1f %9.1f%n", TickProfiler.PHASES[p], engine.profiler.summary.get(p * 3) / 1e3,
+                        engine.profiler.summary.get(p * 3 + 1) / 1e3, engine.profiler.summary.get(p * 3 + 2) / 1e3);
+            }
+            return match;
+        } catch (IOException ex) {
+            System.err.println("replay: " + ex);
+            return false;
+        }
+    }
+
+    /**
+     * Steady-state allocation check: warms the engine up, then counts the bytes allocated over a window of
+     * ticks by the stepping thread and, with {@code threads > 1}, by the fork/join workers stepping chunks.
+     * A pellet is dropped every {@link #ALLOC_CHECK_FEED_TICKS} ticks at a seeded spot and the cursor sits in
+     * the tank, moving to a new spot with each pellet, in the warm-up and the window alike, so feeding,
+     * eating, pooping and cursor-following are all covered; stores only grow during warm-up.
+     * Returns true (and exits 0 from main) when the steady-state ticks allocated nothing.
+     */
+    static boolean runAllocCheck(long seed, int extraFish, int threads) {
+        java.lang.management.ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+        if (!(mx instanceof com.sun.management.ThreadMXBean)) {
+            System.out.println("alloc-check: per-thread allocation counters unavailable on this JVM");
+            return true;
+        }
+        com.sun.management.ThreadMXBean counters = (com.sun.management.ThreadMXBean) mx;
+        long tid = Thread.currentThread().getId();
+
+        AquariumEngine engine = new AquariumEngine(960, 620, seed);
+        FishType[] types = FishType.values();
+        for (int i = 0; i < extraFish; i++) engine.addFish(types[i % types.length]);
+        Set<Long> workers = ConcurrentHashMap.newKeySet();
+        ForkJoinPool pool = threads > 1 ? new ForkJoinPool(threads, p -> {
+            ForkJoinWorkerThread w = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            workers.add(w.getId());
+            return w;
+        }, null, false) : null;
+        engine.setPool(pool);
+        Random feeder = new Random(seed ^ 0x5DEECE66DL);
+        for (int t = 0; t < 20_000; t++) allocCheckTick(engine, feeder, t); // warm-up: JIT, store/grid growth
+
+        int window = 600;
+        long[] workerIds = workers.stream().mapToLong(Long::longValue).toArray();
+        long[] workersBefore = counters.getThreadAllocatedBytes(workerIds); // charged to this thread, before it is read
+        long before = counters.getThreadAllocatedBytes(tid);
+        for (int t = 0; t < window; t++) allocCheckTick(engine, feeder, t);
+        long bytes = counters.getThreadAllocatedBytes(tid) - before;
+        long[] workersAfter = counters.getThreadAllocatedBytes(workerIds);
+        long workerBytes = 0;
+        for (int i = 0; i < workerIds.length; i++) workerBytes += Math.max(0, workersAfter[i] - workersBefore[i]);
+        boolean sameWorkers = workers.size() == workerIds.length; // a worker started in the window is not counted
+        if (pool != null) pool.shutdown();
+
+        System.out.printf("alloc-check: seed=%d fish=%d threads=%d ticks=%d allocated=%d bytes (%.1f per tick), %d workers %d bytes%s%n",
+                seed, engine.fish.size(), Math.max(1, threads), window, bytes, bytes / (double) window, workerIds.length, workerBytes,
+                sameWorkers ? "" : " (a worker started during the window)");
+        return bytes == 0 && workerBytes == 0 && sameWorkers;
+    }
+
+    static final int ALLOC_CHECK_FEED_TICKS = 30;
+
+    private static void allocCheckTick(AquariumEngine engine, Random feeder, int t) {
+        if (t % ALLOC_CHECK_FEED_TICKS == 0) {
+            Tank tank = engine.tankBounds;
+            engine.dropPelletAt(tank.x + feeder.nextDouble() * tank.width);
+            engine.setCursor(tank.x + feeder.nextDouble() * tank.width, tank.y + AquariumEngine.FEED_TOP_MARGIN
+                    + feeder.nextDouble() * (engine.tankFloorY() - tank.y - AquariumEngine.FEED_TOP_MARGIN));
+        }
+        engine.step();
+    }
+
+    /**
+     * Micro-benchmark for stepping and offscreen painting, one row per (population, thread count).
+     * Each measured iteration starts from a freshly seeded and populated engine (setup is not timed),
+     * so populations don't drift between iterations and rows are comparable across builds. Warm-up
+     * iterations are run and discarded first; the row reports mean, standard deviation and best.
+     */
+    static void runBench(String[] args) {
+        long seed = argLong(args, "--seed", 42);
+        long[] fishCounts = argLongs(args, "--fish", 200, 1000, 4000);
+        long[] threadCounts = argLongs(args, "--threads", 1);
+        int pellets = (int) argLong(args, "--pellets", 200);
+        int poops = (int) argLong(args, "--poops", 200);
+        int corpses = (int) argLong(args, "--corpses", 50);
+        int warmups = (int) argLong(args, "--warmups", 3);
+        int iterations = (int) argLong(args, "--iterations", 5);
+        int ticks = (int) argLong(args, "--ticks", 300);
+        int frames = (int) argLong(args, "--frames", 120);
+
+        WaterField.checkUnits(); // a broken unit scale makes every dirt/algae number below meaningless
+        System.out.println("benchmark,fish,pellets,poops,corpses,threads,mean_us,stddev_us,best_us");
+        for (long threads : threadCounts) {
+            ForkJoinPool pool = threads > 1 ? new ForkJoinPool((int) threads) : null;
+            for (long fish : fishCounts) {
+                double[] stepUs = new double[iterations];
+                for (int it = -warmups; it < iterations; it++) {
+                    AquariumEngine engine = benchEngine(seed + it, (int) fish, pellets, poops, corpses);
+                    engine.setPool(pool);
+                    long t0 = System.nanoTime();
+                    for (int t = 0; t < ticks; t++) engine.step();
+                    if (it >= 0) stepUs[it] = (System.nanoTime() - t0) / 1e3 / ticks;
+                }
+                printBenchRow("step", fish, pellets, poops, corpses, threads, stepUs);
+            }
+            if (pool != null) pool.shutdown();
+        }
+
+        // Painting is single-threaded (EDT); the scene advances between frames outside the timed region
+        for (long fish : fishCounts) {
+            double[] paintUs = new double[iterations];
+            for (int it = -warmups; it < iterations; it++) {
+                AquariumEngine engine = benchEngine(seed + it, (int) fish, pellets, poops, corpses);
+                SimulationLoop sim = new SimulationLoop(engine);
+                AquariumPanel panel = new AquariumPanel(sim);
+                panel.timer.stop();
+                panel.setSize(engine.worldW, engine.worldH);
+                BufferedImage img = new BufferedImage(engine.worldW, engine.worldH, BufferedImage.TYPE_INT_ARGB_PRE);
+                Graphics2D g = img.createGraphics();
+                long total = 0;
+                for (int f = 0; f < frames; f++) {
+                    engine.step();
+                    sim.publish();
+                    long t0 = System.nanoTime();
+                    panel.paintComponent(g);
+                    total += System.nanoTime() - t0;
+                }
+                g.dispose();
+                if (it >= 0) paintUs[it] = total / 1e3 / frames;
+            }
+            printBenchRow("paint", fish, pellets, poops, corpses, 1, paintUs);
+        }
+    }
+
+    /** A seeded engine with the requested extra population scattered through the water column. */
+    static AquariumEngine benchEngine(long seed, int fish, int pellets, int poops, int corpses) {
+        AquariumEngine engine = new AquariumEngine(960, 620, seed);
+        FishType[] types = FishType.values();
+        for (int i = 0; i < fish; i++) engine.addFish(types[i % types.length]);
+        Random rng = new Random(seed ^ 0x5DEECE66DL);
+        Tank t = engine.tankBounds;
+        double top = t.y + AquariumEngine.FEED_TOP_MARGIN, depth = engine.tankFloorY() - top;
+        for (int i = 0; i < pellets; i++) engine.pellets.add(t.x + rng.nextDouble() * t.width, top + rng.nextDouble() * depth, 4);
+        for (int i = 0; i < poops; i++) engine.poops.add(t.x + rng.nextDouble() * t.width, top + rng.nextDouble() * depth, 3);
+        for (int i = 0; i < corpses; i++) {
+            engine.corpses.add(t.x + rng.nextDouble() * t.width, top + rng.nextDouble() * depth, 5 + rng.nextDouble() * 6, 0.02);
+        }
+        return engine;
+    }
+
+    private static void printBenchRow(String name, long fish, int pellets, int poops, int corpses, long threads, double[] us) {
+        double mean = 0, best = Double.MAX_VALUE;
+        for (double u : us) { mean += u; best = Math.min(best, u); }
+        mean /= us.length;
+        double var = 0;
+        for (double u : us) var += (u - mean) * (u - mean);
+        double sd = us.length > 1 ? Math.sqrt(var / (us.length - 1)) : 0;
+        System.out.printf("%s,%d,%d,%d,%d,%d,%.1f,%.1f,%.1f%n", name, fish, pellets, poops, corpses, threads, mean, sd, best);
+    }
+
+    /** Comma-separated values after {@code flag}, e.g. {@code --fish 200,2000}. */
+    static long[] argLongs(String[] args, String flag, long... def) {
+        if (args == null) return def;
+        for (int i = 0; i + 1 < args.length; i++) {
+            if (flag.equalsIgnoreCase(args[i])) {
+                return Arrays.stream(args[i + 1].split(",")).mapToLong(v -> Long.parseLong(v.trim())).toArray();
+            }
+        }
+        return def;
+    }
+
+    /** Like {@link #argLongs} for fractional values, e.g. {@code --clean-rate 3,6.5}. */
+    static double[] argDoubles(String[] args, String flag, double... def) {
+        if (args == null) return def;
+        for (int i = 0; i + 1 < args.length; i++) {
+            if (flag.equalsIgnoreCase(args[i])) {
+                return Arrays.stream(args[i + 1].split(",")).mapToDouble(v -> Double.parseDouble(v.trim())).toArray();
+            }
+        }
+        return def;
+    }
+
+    static String argString(String[] args, String flag, String def) {
+        if (args == null) return def;
+        for (int i = 0; i + 1 < args.length; i++) {
+            if (flag.equalsIgnoreCase(args[i])) return args[i + 1];
+        }
+        return def;
+    }
+
+    static boolean argsContain(String[] args, String flag) {
+        if (args == null) return false;
+        for (String a : args) if (flag.equalsIgnoreCase(a)) return true;
+        return false;
+    }
 
-    // Input
-    Point mouse = new Point(0, 0);
+    static long argLong(String[] args, String flag, long def) {
+        if (args == null) return def;
+        for (int i = 0; i + 1 < args.length; i++) {
+            if (flag.equalsIgnoreCase(args[i])) return Long.parseLong(args[i + 1]);
+        }
+        return def;
+    }
+}
+
+/* ===================== Panel (view + input) ===================== */
+
+class AquariumPanel extends JPanel implements ActionListener, MouseListener, MouseMotionListener, KeyListener {
+    // The engine lives on the simulation thread; the panel only sends it commands and draws snapshots
+    final SimulationLoop sim;
+    final Rectangle tankBounds;
+    final int floorY;
 
-    // Timing
+    // Timing: repaint every FRAME_PERIODS[pacing] ms, backing off while painting can't keep up; positions are
+    // interpolated between the last two ticks (I toggles), so motion stays smooth whatever the two rates
     final Timer timer;
-    long lastTickNanos = System.nanoTime();
+    static final int[] FRAME_PERIODS = { 16, 33, 50 };
+    private int pacing = 0;
+    private boolean interpolate = true;
+    private double renderLag;                 // seconds to wind moving things back this frame
+    private double paintNanosAvg;             // smoothed paintComponent cost
+    private long lastPaintAt;
+    private long framesDropped;               // repaints that came a whole period (or more) late
+    private int framesThisSecond, fps;
+    private long fpsWindowStart;
 
     // Visuals
     final Color waterColorBase = new Color(40, 130, 200);
     final Color dirtTint = new Color(80, 50, 20);
     final Color algaeTint = new Color(30, 120, 30);
-
-    // HUD
+    private final Color waterTop = waterColorBase.brighter(), waterBottom = waterColorBase.darker();
+    private static final Color AIR = new Color(230, 240, 255);
+    private static final Color TANK_EDGE = new Color(180, 210, 230, 180);
+    private static final BasicStroke TANK_EDGE_STROKE = new BasicStroke(3f);
+    private static final Color FLOOR = new Color(150, 120, 90);
+    private static final Color FILTER_ON = new Color(140, 210, 240), FILTER_OFF = new Color(90, 90, 90);
+    private static final Color FILTER_FLOW = new Color(200, 230, 255, 120);
+    private final Rectangle waterRect;       // where the water field image is drawn
+    private BufferedImage waterImage;        // one pixel per water field cell
+    private BufferedImage waterScaled;       // waterImage smoothly scaled to waterRect, redrawn at ~10 Hz
+    static final int WATER_REFRESH_TICKS = 6;
+    private int[] waterPixels;
+    private long waterImageTick = -1;
+    private final Color[][] speciesColors = new Color[Species.CATALOG.length][]; // base, fin, pattern, tail
+    private static final Color PELLET_FALLING = new Color(160, 120, 60);
+    private static final Color PELLET_SETTLED = new Color(110, 80, 40);
+    private static final Color POOP = new Color(90, 70, 50);
+    private final Ellipse2D.Double particle = new Ellipse2D.Double(); // reused for every pellet/poop
+
+    // Pre-rendered sprites; fish/corpses/seaweed are drawn as image blits
+    static final int ROTATION_BUCKETS = 64;   // 5.6 degrees per fish heading step
+    static final int CORPSE_ALPHA_BUCKETS = 16;
+    static final int SWAY_BUCKETS = 32;
+    final SpriteCache sprites = new SpriteCache(2048);
+
+    // Fish level of detail, chosen per frame from the population (switching back 10% lower, so it doesn't flicker)
+    static final int LOD_FULL = 0, LOD_GLYPH = 1, LOD_POINT = 2;
+    static final int GLYPH_AT = 1500;          // fish: body + tail only, coarser rotation/size buckets
+    static final int POINT_AT = 5000;          // fish: one colored 3x3 point each
+    static final double POINT_BODY_PX = 6;     // any fish shorter than this on screen is drawn as a point
+    static final int GLYPH_ROTATION_BUCKETS = 16;
+    int fishLod = LOD_FULL;
+    static final int PARTICLE_DETAIL_MAX = 1500; // pellets + poop above this drop antialiasing
+
+    // HUD (the status line is re-formatted at most hudHz times a second, and only when it would change)
     private final JLabel statusLabel = new JLabel();
+    private long hudIntervalNanos = 250_000_000L;
+    private long nextHudAt;
+    private long hudTick = -1;
+    private boolean hudPaused;
+
+    // Profiler overlay (O): per-phase tick timings, rebuilt with the status line
+    private boolean showProfiler;
+    private final String[] profilerLines = new String[TickProfiler.PHASES.length + 2];
+    private static final Font OVERLAY_FONT = new Font(Font.MONOSPACED, Font.PLAIN, 11);
+    private static final Color OVERLAY_BG = new Color(0, 0, 0, 150);
+
+    AquariumPanel(SimulationLoop sim) {
+        this.sim = sim;
+        AquariumEngine engine = sim.engine; // immutable geometry only; never touch entities from the EDT
+        Tank t = engine.tankBounds;
+        this.tankBounds = new Rectangle(t.x, t.y, t.width, t.height);
+        this.floorY = engine.tankFloorY();
+        WaterField wf = engine.water;
+        this.waterRect = new Rectangle((int) wf.x0, (int) wf.y0, (int) Math.round(wf.width), (int) Math.round(wf.height));
+        for (Species sp : Species.CATALOG) {
+            Color base = new Color(sp.baseRgb);
+            speciesColors[sp.id] = new Color[] { base, new Color(sp.finRgb), new Color(sp.patternRgb), base.darker() };
+        }
 
-    // Interaction thresholds
-    final int FEED_TOP_MARGIN = 50;           // px below tank top where clicks count as "feed" (air band)
-    final double CURSOR_ATTRACT_RADIUS = 120; // fish will follow if within this distance
-
-    AquariumPanel(int w, int h) {
-        this.worldW = w;
-        this.worldH = h;
-        this.tankBounds = new Rectangle(20, 20, w - 40, h - 40);
-
-        setPreferredSize(new Dimension(w, h));
+        setPreferredSize(new Dimension(engine.worldW, engine.worldH));
         setBackground(new Color(20, 30, 40));
         setFocusable(true);
         addMouseListener(this);
         addMouseMotionListener(this);
         addKeyListener(this);
 
-        // Seaweed garden along the floor
-        int floorY = tankFloorY();
-        int clumps = 7;
-        for (int i = 0; i < clumps; i++) {
-            double nx = tankBounds.x + (i + 0.5) * (tankBounds.width / (double) clumps);
-            seaweeds.add(new Seaweed(nx, floorY, 40 + rng.nextInt(35)));
-        }
-
-        // Seed fish
-        fish.add(makeMidWaterFish(18));
-        fish.add(makeBottomFeeder(16));
-        fish.add(makeAlgaeEater(16));
-
-        timer = new Timer(16, this); // ~60 FPS
+        timer = new Timer(FRAME_PERIODS[0], this); // ~60 FPS repaint; stepping happens on the simulation thread
         timer.start();
         updateStatus();
     }
@@ -126,6 +537,7 @@ class AquariumPanel extends JPanel implements ActionListener, MouseListener, Mou
         JButton togF = new JButton("Toggle Filter (F)");
         JButton rstAlg = new JButton("Reduce Algae (R)");
         JButton pause = new JButton("Pause (P)");
+        JButton prof = new JButton("Profiler (O)");
 
         addA.addActionListener(e -> addFishKey('A'));
         addB.addActionListener(e -> addFishKey('B'));
@@ -133,6 +545,7 @@ class AquariumPanel extends JPanel implements ActionListener, MouseListener, Mou
         togF.addActionListener(e -> addFishKey('F'));
         rstAlg.addActionListener(e -> addFishKey('R'));
         pause.addActionListener(e -> addFishKey('P'));
+        prof.addActionListener(e -> addFishKey('O'));
 
         JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT, 8, 2));
         buttons.add(addA);
@@ -141,153 +554,1099 @@ class AquariumPanel extends JPanel implements ActionListener, MouseListener, Mou
         buttons.add(togF);
         buttons.add(rstAlg);
         buttons.add(pause);
+        buttons.add(prof);
         hud.add(buttons, BorderLayout.EAST);
         return hud;
     }
 
     private void addFishKey(char c) {
         switch (Character.toUpperCase(c)) {
-            case 'A': fish.add(makeMidWaterFish(14 + rng.nextInt(8))); break;
-            case 'B': fish.add(makeBottomFeeder(14 + rng.nextInt(6))); break;
-            case 'G': fish.add(makeAlgaeEater(14 + rng.nextInt(6))); break;
-            case 'F': filterOn = !filterOn; break;
-            case 'R': algaeLevel = Math.max(0, algaeLevel - 25); break;
-            case 'P': paused = !paused; break;
+            case 'A': sim.submit(new Input(Input.ADD_FISH, FishType.MID.ordinal(), 0)); break;
+            case 'B': sim.submit(new Input(Input.ADD_FISH, FishType.BOTTOM.ordinal(), 0)); break;
+            case 'G': sim.submit(new Input(Input.ADD_FISH, FishType.ALGAE.ordinal(), 0)); break;
+            case 'F': sim.submit(new Input(Input.TOGGLE_FILTER, 0, 0)); break;
+            case 'R': sim.submit(new Input(Input.REDUCE_ALGAE, 0, 0)); break;
+            case 'P': sim.togglePause(); break;
+            case 'O': showProfiler = !showProfiler; hudTick = -1; break;
+            case 'K': sim.checkpoint(Path.of("aquarium.aqc")); break;
+            case 'I': interpolate = !interpolate; break;
             default: break;
         }
-        updateStatus();
-        repaint();
     }
 
     @Override
     public void actionPerformed(ActionEvent e) {
         long now = System.nanoTime();
-        double dt = (now - lastTickNanos) / 1_000_000_000.0;
-        lastTickNanos = now;
-        if (dt > 0.1) dt = 0.1; // clamp for pauses
-
-        if (!paused) step(dt);
+        if (now - fpsWindowStart >= 1_000_000_000L) {
+            fps = framesThisSecond;
+            framesThisSecond = 0;
+            fpsWindowStart = now;
+            adaptPacing();
+        }
+        if (now - nextHudAt >= 0) {
+            nextHudAt = now + hudIntervalNanos;
+            updateStatus();
+        }
         repaint();
     }
 
-    private void step(double dt) {
-        timeSeconds += dt;
-
-        // Pellets fall more slowly with water drag
-        for (Pellet p : pellets) {
-            p.age += dt;
-            if (!p.settled) {
-                p.vy += 18 * dt;             // gentle gravity
-                p.vy *= (1.0 - 0.22 * dt);   // water drag
-                if (p.vy > 80) p.vy = 80;    // soft terminal velocity
-                p.y += p.vy * dt;
-
-                if (p.y >= tankFloorY() - p.radius) {
-                    p.y = tankFloorY() - p.radius;
-                    p.vy = 0;
-                    p.settled = true;
-                }
-            }
-            // Algae growth if pellet lingers
-            if (p.age > 12) {
-                algaeLevel = Math.min(100, algaeLevel + 2.2 * dt);
-                dirt = Math.min(100, dirt + 1.6 * dt);
-            }
+    /**
+     * Once a second: a slower repaint period when painting eats most of the current one (the EDT would
+     * otherwise queue repaints and lag input), a faster one again once it fits the shorter period easily.
+     */
+    private void adaptPacing() {
+        double budget = FRAME_PERIODS[pacing] * 1e6;
+        if (paintNanosAvg > 0.75 * budget && pacing < FRAME_PERIODS.length - 1) pacing++;
+        else if (pacing > 0 && paintNanosAvg < 0.5 * FRAME_PERIODS[pacing - 1] * 1e6) pacing--;
+        timer.setDelay(FRAME_PERIODS[pacing]);
+    }
+
+    /** Caps how often the status line is rebuilt; {@code hz <= 0} means every frame. */
+    void setHudRate(double hz) {
+        hudIntervalNanos = hz <= 0 ? 0 : (long) (1e9 / hz);
+    }
+
+    private void updateStatus() {
+        WorldSnapshot w = sim.snapshots.latest();
+        boolean paused = sim.isPaused();
+        if (w.tick == hudTick && paused == hudPaused) return;
+        hudTick = w.tick;
+        hudPaused = paused;
+        statusLabel.setText(String.format(
+                "Fish: %d | Pellets: %d | Poops: %d | Corpses: %d | Dirt: %.1f | Algae: %.1f | Filter: %s | Pairs: %d | Time: %ds"
+                        + " | FPS: %d (%d late) | Ticks dropped: %d%s",
+                w.fishCount, w.pelletCount, w.poopCount, w.corpseCount, w.dirt, w.algaeLevel, (w.filterOn ? "ON" : "OFF"),
+                w.pairsTested,
+                (int) w.timeSeconds, fps, framesDropped, w.ticksDropped, (paused ? " (PAUSED)" : "")
+        ));
+        if (showProfiler) {
+            profilerLines[0] = String.format("%-10s %8s %8s %8s", "phase (us)", "p50", "p99", "max");
+            for (int p = 0; p < TickProfiler.PHASES.length; p++) {
+                profilerLines[p + 1] = String.format("%-10s %8.1f %8.1f %8.1f", TickProfiler.PHASES[p],
+                        w.phaseStats[p * 3] / 1e3, w.phaseStats[p * 3 + 1] / 1e3, w.phaseStats[p * 3 + 2] / 1e3);
+            }
+            profilerLines[profilerLines.length - 1] = w.allocBytesPerTick < 0 ? "alloc/tick: n/a"
+                    : String.format("alloc/tick: %.0f B", w.allocBytesPerTick);
+        }
+    }
+
+    /* ===================== Input ===================== */
+
+    @Override
+    public void mouseClicked(MouseEvent e) {
+        if (!tankBounds.contains(e.getPoint())) return;
+        if (SwingUtilities.isLeftMouseButton(e)) {
+            // Top-click feeds; lower-click shakes the tank
+            int x = e.getX(), y = e.getY();
+            if (sim.engine.inFeedBand(y)) {
+                sim.submit(new Input(Input.DROP_PELLET, x, 0));
+            } else {
+                sim.submit(new Input(Input.SHAKE, x, y));
+            }
+        } else if (SwingUtilities.isRightMouseButton(e)) {
+            // Right-click also shakes (like tapping glass)
+            int x = e.getX(), y = e.getY();
+            sim.submit(new Input(Input.SHAKE, x, y));
+        }
+    }
+
+    @Override public void mousePressed(MouseEvent e) { moveCursor(e); }
+    @Override public void mouseDragged(MouseEvent e) { moveCursor(e); }
+    @Override public void mouseReleased(MouseEvent e) { }
+    @Override public void mouseMoved(MouseEvent e) { moveCursor(e); }
+    @Override public void mouseEntered(MouseEvent e) { }
+    @Override public void mouseExited(MouseEvent e) { }
+    @Override public void keyTyped(KeyEvent e) { }
+    @Override public void keyReleased(KeyEvent e) { }
+    @Override public void keyPressed(KeyEvent e) { addFishKey(Character.toUpperCase(e.getKeyChar())); }
+
+    private void moveCursor(MouseEvent e) {
+        int x = e.getX(), y = e.getY();
+        sim.submit(new Input(Input.SET_CURSOR, x, y));
+    }
+
+    /* ===================== Rendering ===================== */
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        long paintStart = System.nanoTime();
+        countFrame(paintStart);
+        super.paintComponent(g);
+        Graphics2D g2 = (Graphics2D) g.create();
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+        WorldSnapshot snap = sim.snapshots.latest();
+        renderLag = interpolate ? interpolationLag(snap, paintStart) : 0;
+        double lag = renderLag;
+        paintWater(g2, snap);
+
+        // Tank border
+        g2.setColor(TANK_EDGE);
+        g2.setStroke(TANK_EDGE_STROKE);
+        g2.drawRect(tankBounds.x, tankBounds.y, tankBounds.width, tankBounds.height);
+
+        // Floor
+        g2.setColor(FLOOR);
+        g2.fillRect(tankBounds.x, floorY, tankBounds.width, 10);
+
+        // Seaweed (behind pellets/poop/corpses so it looks planted)
+        for (int i = 0; i < snap.seaweedCount; i++) {
+            paintSeaweed(g2, snap.seaweedX[i], snap.seaweedY[i], snap.seaweedH[i], snap.seaweedPhase[i]);
+        }
+
+        // Pellets and poop: antialiased ellipses normally, plain integer ovals (the rasterizer's fast path) in a crowd
+        boolean crowdedParticles = snap.pelletCount + snap.poopCount > PARTICLE_DETAIL_MAX;
+        if (crowdedParticles) g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+        g2.setColor(PELLET_FALLING);
+        for (int i = 0; i < snap.pelletCount; i++) {
+            if (!snap.pelletSettled[i]) {
+                paintParticle(g2, snap.pelletX[i], snap.pelletY[i] - snap.pelletVY[i] * lag, snap.pelletR[i], crowdedParticles);
+            }
+        }
+        g2.setColor(PELLET_SETTLED);
+        for (int i = 0; i < snap.pelletCount; i++) {
+            if (snap.pelletSettled[i]) paintParticle(g2, snap.pelletX[i], snap.pelletY[i], snap.pelletR[i], crowdedParticles);
+        }
+        g2.setColor(POOP);
+        for (int i = 0; i < snap.poopCount; i++) {
+            paintParticle(g2, snap.poopX[i], snap.poopY[i] - snap.poopVY[i] * lag, snap.poopR[i], crowdedParticles);
+        }
+        if (crowdedParticles) g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+        // Corpses
+        for (int i = 0; i < snap.corpseCount; i++) {
+            paintCorpse(g2, snap.corpseX[i], snap.corpseY[i] - snap.corpseVY[i] * lag, snap.corpseR[i], snap.corpseDecay[i]);
+        }
+
+        // Fish
+        fishLod = chooseLod(fishLod, snap.fishCount);
+        for (int i = 0; i < snap.fishCount; i++) {
+            paintFish(g2, snap, i);
+        }
+
+        // Filter indicator
+        paintFilter(g2, snap.filterOn);
+
+        if (showProfiler && profilerLines[0] != null) paintProfiler(g2);
+
+        g2.dispose();
+        paintNanosAvg += (System.nanoTime() - paintStart - paintNanosAvg) * 0.1;
+    }
+
+    /**
+     * How far behind the latest tick to draw: the snapshot shows the world at its tick, and drawing it
+     * {@code (1 - alpha)} of a step earlier, where alpha is how much of the next step has elapsed since it
+     * was published, moves things continuously from the previous tick's positions to these ones.
+     */
+    private static double interpolationLag(WorldSnapshot snap, long now) {
+        if (!snap.stepped) return 0;
+        double alpha = (now - snap.publishedAt) / (double) SimulationLoop.TICK_NANOS;
+        return alpha >= 1 ? 0 : (1 - Math.max(0, alpha)) * AquariumEngine.FIXED_DT;
+    }
+
+    /** Frame rate and late-frame bookkeeping, called once per paint. */
+    private void countFrame(long now) {
+        framesThisSecond++;
+        long period = FRAME_PERIODS[pacing] * 1_000_000L;
+        if (lastPaintAt != 0 && now - lastPaintAt >= 2 * period) framesDropped += (now - lastPaintAt) / period - 1;
+        lastPaintAt = now;
+    }
+
+    private void paintWater(Graphics2D g2, WorldSnapshot snap) {
+        // Air band (top color)
+        g2.setColor(AIR);
+        g2.fillRect(tankBounds.x, tankBounds.y, tankBounds.width, AquariumEngine.FEED_TOP_MARGIN);
+
+        // Water: the field image (base gradient with the dirt/algae tints baked in), one opaque blit
+        if (waterScaled == null || Math.abs(snap.tick - waterImageTick) >= WATER_REFRESH_TICKS) updateWaterImage(snap);
+        g2.drawImage(waterScaled, waterRect.x, waterRect.y, null);
+    }
+
+    /**
+     * Recomputes one opaque pixel per field cell, then rescales into {@link #waterScaled}: the water gradient at the cell's row, then the dirt and
+     * algae tints composited over it exactly as the old full-tank alpha fills did (alpha = level / 120, max 0.6).
+     */
+    private void updateWaterImage(WorldSnapshot snap) {
+        int cols = snap.waterCols, rows = snap.waterRows;
+        if (waterImage == null || waterImage.getWidth() != cols || waterImage.getHeight() != rows) {
+            waterImage = new BufferedImage(cols, rows, BufferedImage.TYPE_INT_RGB);
+            waterPixels = new int[cols * rows];
+        }
+        if (waterScaled == null) {
+            GraphicsConfiguration gc = getGraphicsConfiguration();
+            waterScaled = gc != null ? gc.createCompatibleImage(waterRect.width, waterRect.height, Transparency.OPAQUE)
+                    : new BufferedImage(waterRect.width, waterRect.height, BufferedImage.TYPE_INT_RGB);
+        }
+        Color top = waterTop, bottom = waterBottom;
+        for (int y = 0; y < rows; y++) {
+            double t = (y + 0.5) / rows;
+            double wr = top.getRed() + (bottom.getRed() - top.getRed()) * t;
+            double wg = top.getGreen() + (bottom.getGreen() - top.getGreen()) * t;
+            double wb = top.getBlue() + (bottom.getBlue() - top.getBlue()) * t;
+            for (int x = 0; x < cols; x++) {
+                int c = y * cols + x;
+                double a1 = Math.min(0.6, snap.waterDirt[c] / 120.0), a2 = Math.min(0.6, snap.waterAlgae[c] / 120.0);
+                double r = (wr * (1 - a1) + dirtTint.getRed() * a1) * (1 - a2) + algaeTint.getRed() * a2;
+                double g = (wg * (1 - a1) + dirtTint.getGreen() * a1) * (1 - a2) + algaeTint.getGreen() * a2;
+                double b = (wb * (1 - a1) + dirtTint.getBlue() * a1) * (1 - a2) + algaeTint.getBlue() * a2;
+                waterPixels[c] = ((int) r << 16) | ((int) g << 8) | (int) b;
+            }
+        }
+        waterImage.setRGB(0, 0, cols, rows, waterPixels, 0, cols);
+        Graphics2D g = waterScaled.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(waterImage, 0, 0, waterRect.width, waterRect.height, null);
+        g.dispose();
+        waterImageTick = snap.tick;
+    }
+
+    /* Each paint* method blits a cached sprite; the matching draw* method renders it once, in local coordinates. */
+
+    private void paintSeaweed(Graphics2D g2, double baseX, double baseY, double height, double phase) {
+        int h = (int) Math.round(height);
+        int sway = Math.floorMod((int) Math.round(phase / (Math.PI * 2) * SWAY_BUCKETS), SWAY_BUCKETS);
+        long key = SpriteCache.key(SpriteCache.SEAWEED, h, sway, 0);
+        BufferedImage img = sprites.get(key);
+        if (img == null) {
+            int w = 48, ht = h + 8; // strands span +-12 px plus +-8 px sway
+            img = sprites.put(key, sprites.create(this, w, ht));
+            Graphics2D g = img.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.translate(w / 2, ht - 4);
+            drawSeaweed(g, h, sway * (Math.PI * 2) / SWAY_BUCKETS);
+            g.dispose();
+        }
+        g2.drawImage(img, (int) baseX - img.getWidth() / 2, (int) baseY - (img.getHeight() - 4), null);
+    }
+
+    private void drawSeaweed(Graphics2D g2, double height, double phase) {
+        g2.setStroke(new BasicStroke(3f));
+        int strands = 5;
+        for (int i = 0; i < strands; i++) {
+            double off = (i - (strands - 1) / 2.0) * 6.0;
+            double h = height * (0.8 + i * 0.05);
+            double sway = Math.sin(phase + i * 0.8) * 8.0;
+            int x1 = (int) off;
+            int y1 = 0;
+            int x2 = (int) (off + sway);
+            int y2 = (int) -h;
+            g2.setColor(new Color(40, 150 + i * 15, 60));
+            g2.drawLine(x1, y1, x2, y2);
+        }
+    }
+
+    private void paintCorpse(Graphics2D g2, double x, double y, double radius, double decay) {
+        int r2 = (int) Math.round(radius * 2);             // half-pixel radius steps
+        int alpha = (int) Math.round(Math.max(0.15, 1.0 - decay) * (CORPSE_ALPHA_BUCKETS - 1));
+        long key = SpriteCache.key(SpriteCache.CORPSE, r2, alpha, 0);
+        BufferedImage img = sprites.get(key);
+        if (img == null) {
+            double r = r2 / 2.0;
+            int side = (int) Math.ceil(r * 3.0) + 4;
+            img = sprites.put(key, sprites.create(this, side, side));
+            Graphics2D g = img.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.translate(side / 2.0, side / 2.0);
+            drawCorpse(g, r, alpha / (double) (CORPSE_ALPHA_BUCKETS - 1));
+            g.dispose();
+        }
+        blitCentered(g2, img, x, y);
+    }
+
+    private void drawCorpse(Graphics2D g2, double radius, double opacity) {
+        double bodyLen = radius * 3.0;
+        double bodyHt = radius * 1.6;
+
+        // faded gray-brown, more transparent as it decays
+        Color base = new Color(120, 110, 100, (int) (opacity * 255));
+
+        g2.rotate(Math.PI * 0.5); // sideways
+        g2.setColor(base);
+        g2.fill(new Ellipse2D.Double(-bodyLen * 0.5, -bodyHt * 0.5, bodyLen, bodyHt));
+    }
+
+    private void paintParticle(Graphics2D g2, double x, double y, double r, boolean crowded) {
+        if (crowded) {
+            int d = (int) Math.round(r * 2);
+            g2.fillOval((int) Math.round(x - r), (int) Math.round(y - r), d, d);
+        } else {
+            particle.setFrame(x - r, y - r, r * 2, r * 2);
+            g2.fill(particle);
+        }
+    }
+
+    /** Level of detail for {@code fishCount} fish, given the level used last frame. */
+    static int chooseLod(int current, int fishCount) {
+        int lod = current;
+        while (lod < LOD_POINT && fishCount >= (lod == LOD_FULL ? GLYPH_AT : POINT_AT)) lod++;
+        while (lod > LOD_FULL && fishCount < (lod == LOD_POINT ? POINT_AT : GLYPH_AT) * 0.9) lod--;
+        return lod;
+    }
+
+    private void paintFish(Graphics2D g2, WorldSnapshot snap, int slot) {
+        int speciesId = snap.fishSpecies[slot];
+        double x = snap.fishX[slot] - snap.fishVX[slot] * renderLag, y = snap.fishY[slot] - snap.fishVY[slot] * renderLag;
+        int lod = snap.fishSize[slot] * 1.6 < POINT_BODY_PX ? LOD_POINT : fishLod;
+        if (lod == LOD_POINT) {
+            g2.setColor(speciesColors[speciesId][0]);
+            g2.fillRect((int) x - 1, (int) y - 1, 3, 3);
+            return;
+        }
+
+        boolean glyph = lod == LOD_GLYPH;
+        int buckets = glyph ? GLYPH_ROTATION_BUCKETS : ROTATION_BUCKETS;
+        double dir = Math.atan2(snap.fishVY[slot], snap.fishVX[slot]);
+        int size = glyph ? Math.max(4, (int) Math.round(snap.fishSize[slot] / 4) * 4) : (int) Math.round(snap.fishSize[slot]);
+        int rot = Math.floorMod((int) Math.round(dir / (Math.PI * 2) * buckets), buckets);
+        long key = SpriteCache.key(glyph ? SpriteCache.FISH_GLYPH : SpriteCache.FISH, speciesId, size, rot);
+        BufferedImage img = sprites.get(key);
+        if (img == null) {
+            int side = (int) Math.ceil(size * 2.8) + 4; // tip-to-tail is at most ~1.36 * size from the center
+            img = sprites.put(key, sprites.create(this, side, side));
+            Graphics2D g = img.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.translate(side / 2.0, side / 2.0);
+            g.rotate(rot * (Math.PI * 2) / buckets);
+            if (glyph) drawFishGlyph(g, Species.CATALOG[speciesId], size);
+            else drawFish(g, Species.CATALOG[speciesId], size);
+            g.dispose();
+        }
+        blitCentered(g2, img, x, y);
+    }
+
+    /** Crowd version of {@link #drawFish}: body and tail only. */
+    private void drawFishGlyph(Graphics2D g2, Species species, double size) {
+        double bodyLen = size * 1.6;
+        double bodyHt = size * 0.8;
+        Color[] colors = speciesColors[species.id];
+        g2.setColor(colors[3]);
+        int tailLen = (int) (bodyLen * 0.3);
+        g2.fillPolygon(new int[] { (int) (-bodyLen * 0.5), (int) (-bodyLen * 0.5 - tailLen), (int) (-bodyLen * 0.5 - tailLen) },
+                new int[] { 0, (int) (-bodyHt * 0.4), (int) (bodyHt * 0.4) }, 3);
+        g2.setColor(colors[0]);
+        g2.fill(new Ellipse2D.Double(-bodyLen * 0.5, -bodyHt * 0.5, bodyLen, bodyHt));
+    }
+
+    private void drawFish(Graphics2D g2, Species species, double size) {
+        double bodyLen = size * 1.6;
+        double bodyHt = size * 0.8;
+
+        // Base color by species
+        Color[] colors = speciesColors[species.id];
+        Color base = colors[0];
+
+        // Body
+        g2.setColor(base);
+        g2.fill(new Ellipse2D.Double(-bodyLen * 0.5, -bodyHt * 0.5, bodyLen, bodyHt));
+
+        // Tail shape depends on species
+        Polygon tail = new Polygon();
+        int tailLen = (int) (bodyLen * (species.tailLong ? 0.35 : 0.25));
+        tail.addPoint((int) (-bodyLen * 0.5), 0);
+        tail.addPoint((int) (-bodyLen * 0.5 - tailLen), (int) (-bodyHt * (species.tailWide ? 0.5 : 0.35)));
+        tail.addPoint((int) (-bodyLen * 0.5 - tailLen), (int) (bodyHt * (species.tailWide ? 0.5 : 0.35)));
+        g2.setColor(colors[3]);
+        g2.fill(tail);
+
+        // Fins tint
+        g2.setColor(colors[1]);
+        g2.fill(new Ellipse2D.Double(-bodyLen * 0.1, -bodyHt * 0.6, bodyHt * 0.45, bodyHt * 0.25)); // dorsal
+        g2.fill(new Ellipse2D.Double(0, bodyHt * 0.2, bodyHt * 0.5, bodyHt * 0.25));               // ventral
+
+        // Patterning (stripes or spots)
+        if (species.pattern == SpeciesPattern.STRIPES) {
+            g2.setStroke(new BasicStroke(2f));
+            g2.setColor(colors[2]);
+            for (int i = -2; i <= 2; i++) {
+                int x = (int) (i * (bodyLen * 0.15));
+                g2.drawLine(x, (int) (-bodyHt * 0.45), x, (int) (bodyHt * 0.45));
+            }
+        } else if (species.pattern == SpeciesPattern.SPOTS) {
+            g2.setColor(colors[2]);
+            for (int i = -1; i <= 1; i++) {
+                double cx = i * (bodyLen * 0.18);
+                g2.fill(new Ellipse2D.Double(cx - bodyHt * 0.12, -bodyHt * 0.12, bodyHt * 0.24, bodyHt * 0.24));
+            }
+        }
+
+        // Eye
+        g2.setColor(Color.WHITE);
+        g2.fill(new Ellipse2D.Double(bodyLen * 0.22, -bodyHt * 0.2, bodyHt * 0.25, bodyHt * 0.25));
+        g2.setColor(Color.BLACK);
+        g2.fill(new Ellipse2D.Double(bodyLen * 0.27, -bodyHt * 0.15, bodyHt * 0.12, bodyHt * 0.12));
+    }
+
+    private void paintProfiler(Graphics2D g2) {
+        g2.setFont(OVERLAY_FONT);
+        FontMetrics fm = g2.getFontMetrics();
+        int lineH = fm.getHeight(), x = tankBounds.x + 8, y = tankBounds.y + 8;
+        g2.setColor(OVERLAY_BG);
+        g2.fillRect(x, y, fm.stringWidth(profilerLines[0]) + 12, lineH * profilerLines.length + 8);
+        g2.setColor(Color.WHITE);
+        for (int i = 0; i < profilerLines.length; i++) {
+            g2.drawString(profilerLines[i], x + 6, y + 4 + fm.getAscent() + i * lineH);
+        }
+    }
+
+    private static void blitCentered(Graphics2D g2, BufferedImage img, double x, double y) {
+        g2.drawImage(img, (int) Math.round(x - img.getWidth() / 2.0), (int) Math.round(y - img.getHeight() / 2.0), null);
+    }
+
+    private void paintFilter(Graphics2D g2, boolean filterOn) {
+        int fx = tankBounds.x + tankBounds.width - 28;
+        int fy = tankBounds.y + 10;
+        g2.setColor(filterOn ? FILTER_ON : FILTER_OFF);
+        g2.fillRoundRect(fx, fy, 16, 60, 6, 6);
+        g2.setColor(Color.DARK_GRAY);
+        g2.drawRoundRect(fx, fy, 16, 60, 6, 6);
+        if (filterOn) {
+            g2.setColor(FILTER_FLOW);
+            g2.fillRect(fx - 6, fy + 12, 6, 30);
+        }
+    }
+}
+
+/**
+ * LRU cache of pre-rendered sprites for the panel. Keys pack a sprite kind plus up to three small
+ * parameters (species / size bucket / rotation bucket and so on) into one long. Images are created
+ * compatible with the screen (translucent, so Java2D can keep them as accelerated managed images)
+ * and the least recently drawn ones are evicted once the cache is full.
+ *
+ * The keys stay primitive, so a lookup (one per sprite blit) allocates nothing: entries live in parallel
+ * arrays threaded on a most-recent-first list, found through an open-addressing table of entry numbers.
+ */
+class SpriteCache {
+    static final int FISH = 1, CORPSE = 2, SEAWEED = 3, FISH_GLYPH = 4;
+
+    private final int capacity;
+    private final long[] keys;
+    private final BufferedImage[] images;
+    private final int[] newer, older;    // recency list over entries; -1 ends it
+    private int newest = -1, oldest = -1, size;
+    private final int[] table;           // entry + 1 per slot, 0 = free; linear probing
+    private final int shift;
+    long hits, misses, evictions;
+
+    SpriteCache(int capacity) {
+        this.capacity = capacity;
+        keys = new long[capacity];
+        images = new BufferedImage[capacity];
+        newer = new int[capacity];
+        older = new int[capacity];
+        int bits = 32 - Integer.numberOfLeadingZeros(Math.max(1, capacity * 2 - 1)); // at most half full
+        table = new int[1 << bits];
+        shift = 64 - bits;
+    }
+
+    static long key(int kind, int a, int b, int c) {
+        return ((long) kind << 48) | ((long) (a & 0xFFFF) << 32) | ((long) (b & 0xFFFF) << 16) | (c & 0xFFFF);
+    }
+
+    BufferedImage get(long key) {
+        int e = find(key);
+        if (e < 0) {
+            misses++;
+            return null;
+        }
+        hits++;
+        touch(e);
+        return images[e];
+    }
+
+    BufferedImage put(long key, BufferedImage img) {
+        int e = find(key);
+        if (e < 0) {
+            if (size < capacity) {
+                e = size++;
+            } else { // reuse the least recently drawn entry
+                e = oldest;
+                evictions++;
+                images[e].flush();
+                unlist(e);
+                removeSlot(e);
+            }
+            keys[e] = key;
+            addSlot(e);
+        } else {
+            unlist(e);
+        }
+        images[e] = img;
+        listFirst(e);
+        return img;
+    }
+
+    int size() { return size; }
+
+    /** A blank translucent image, screen-compatible when the component is on screen. */
+    BufferedImage create(Component c, int w, int h) {
+        GraphicsConfiguration gc = c.getGraphicsConfiguration();
+        if (gc != null) return gc.createCompatibleImage(w, h, Transparency.TRANSLUCENT);
+        return new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB_PRE);
+    }
+
+    private int home(long key) { return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift); }
+
+    private int find(long key) {
+        int mask = table.length - 1;
+        for (int i = home(key), e; (e = table[i]) != 0; i = (i + 1) & mask) {
+            if (keys[e - 1] == key) return e - 1;
+        }
+        return -1;
+    }
+
+    private void addSlot(int e) {
+        int mask = table.length - 1, i = home(keys[e]);
+        while (table[i] != 0) i = (i + 1) & mask;
+        table[i] = e + 1;
+    }
+
+    /** Frees e's slot, shifting later entries of the probe run back so every lookup still finds them. */
+    private void removeSlot(int e) {
+        int mask = table.length - 1, i = home(keys[e]);
+        while (table[i] != e + 1) i = (i + 1) & mask;
+        for (int j = (i + 1) & mask, f; (f = table[j]) != 0; j = (j + 1) & mask) {
+            int h = home(keys[f - 1]);
+            if (((j - h) & mask) >= ((j - i) & mask)) { // f's home is at or before the hole: move it in
+                table[i] = f;
+                i = j;
+            }
+        }
+        table[i] = 0;
+    }
+
+    private void touch(int e) {
+        if (e == newest) return;
+        unlist(e);
+        listFirst(e);
+    }
+
+    private void unlist(int e) {
+        if (newer[e] >= 0) older[newer[e]] = older[e]; else newest = older[e];
+        if (older[e] >= 0) newer[older[e]] = newer[e]; else oldest = newer[e];
+    }
+
+    private void listFirst(int e) {
+        newer[e] = -1;
+        older[e] = newest;
+        if (newest >= 0) newer[newest] = e; else oldest = e;
+        newest = e;
+    }
+}
+
+/* ===================== Simulation Engine ===================== */
+
+/**
+ * Headless aquarium world: owns every entity and advances it in fixed {@link #FIXED_DT} steps.
+ * All randomness comes from one seeded {@link Random}, so the same seed plus the same commands at
+ * the same ticks reproduces a run exactly. Nothing here touches AWT/Swing, so the engine can run
+ * faster than real time in batch jobs and benchmarks; {@link AquariumPanel} only draws it.
+ */
+class AquariumEngine {
+    static final double FIXED_DT = 1.0 / 60.0;
+    static final int FEED_TOP_MARGIN = 50;           // px below tank top where clicks count as "feed" (air band)
+    static final double CURSOR_ATTRACT_RADIUS = 120; // fish will follow if within this distance
+    static final double GRID_CELL = 48;              // roughly the largest interaction radius
+    static final double WATER_CELL = 24;             // water-quality field resolution
+    static final double WATER_DIFFUSION = 0.05;      // share exchanged with each neighbor cell per tick
+    static final double FOOD_RECHECK = 0.4;          // s between full nearest-pellet searches per fish
+    static final int FOOD_EVENTS_MAX = 32;           // more new/landed pellets than this in a tick: everyone re-searches
+
+    // World
+    final int worldW, worldH;
+    final Tank tankBounds;
+    final long seed;
+    final SimRandom rng;
+    final Tuning tuning;
+
+    // Entities
+    final List<Fish> fish = new ArrayList<>();
+    private final ArrayDeque<Fish> fishPool = new ArrayDeque<>(FISH_POOL_MAX); // dead fish awaiting reuse (sized up front: a push never grows it)
+    static final int FISH_POOL_MAX = 1024;
+    final List<Seaweed> seaweeds = new ArrayList<>();
+
+    // Particles live in structure-of-arrays stores; "removed" means eaten / cleaned / consumed
+    final ParticleStore pellets = new ParticleStore();
+    final ParticleStore poops = new ParticleStore();
+    final CorpseStore corpses = new CorpseStore();
+
+    // Environment
+    boolean filterOn = true;
+    final WaterField water;            // local dirt/algae concentrations (tank-wide 0..100 units, see WaterField)
+    double dirt = 0.0;                 // tank-wide mean of water.dirt, refreshed every step (HUD/stats)
+    double algaeLevel = 0.0;           // tank-wide mean of water.algae
+    double timeSeconds = 0.0;
+    long tick = 0;
+
+    // Input: cursor in world coordinates; fish follow it while it is inside the tank
+    double cursorX = 0, cursorY = 0;
+
+    // Spatial indexes (rebuilt once per tick; ids are list indices / store slots)
+    final SpatialGrid pelletGrid, poopGrid, corpseGrid;
+    final SweepAndPrune predationBroadPhase = new SweepAndPrune((a, b) -> canEat(fish.get(a), fish.get(b)) || canEat(fish.get(b), fish.get(a)));
+    int predationPairsTested = 0;             // narrow-phase checks in the last predation pass
+    final TickProfiler profiler = new TickProfiler();
+    private final IntPredicate anyPellet = i -> !pellets.removed[i];
+    private final IntPredicate settledPellet = i -> pellets.settled[i] && !pellets.removed[i];
+
+    // Pellets that became food this tick (dropped since the last step, or landed for bottom feeders);
+    // cached fish targets only need to be compared against these, see foodTarget
+    private boolean[] pelletLanded = new boolean[32]; // written per slot by settlePellets
+    private final int[] foodEvents = new int[FOOD_EVENTS_MAX];
+    private int foodEventCount;
+    private boolean foodEventsOverflow;
+    int pelletsKnown;                         // pellets.size after the last compaction
+
+    // Chunked phases (see forEachChunk); bodies are bound once so a step allocates nothing for them
+    static final int CHUNK = 512;
+    private ForkJoinPool pool;                // null = run every chunk on the calling thread
+    private double stepDt;
+    private final ChunkBody settlePellets = this::settlePellets;
+    private final ChunkBody settlePoops = this::settlePoops;
+    private final ChunkBody settleCorpses = this::settleCorpses;
+    private final ChunkBody behaveFish = this::behaveFish;
+    private ChunkRunner[] chunkRunners = new ChunkRunner[0]; // one per pool thread, reused by every phase
+    private final AtomicInteger nextChunk = new AtomicInteger();
+    private ChunkBody chunkBody;              // the phase the runners are working on, and its size
+    private int chunkN, chunkCount;
+
+    AquariumEngine(int w, int h, long seed) { this(w, h, seed, Tuning.DEFAULT); }
+
+    AquariumEngine(int w, int h, long seed, Tuning tuning) {
+        this.worldW = w;
+        this.worldH = h;
+        this.tankBounds = new Tank(20, 20, w - 40, h - 40);
+        this.seed = seed;
+        this.rng = new SimRandom(seed);
+        this.tuning = tuning;
+        this.pelletGrid = new SpatialGrid(tankBounds, GRID_CELL);
+        this.poopGrid = new SpatialGrid(tankBounds, GRID_CELL);
+        this.corpseGrid = new SpatialGrid(tankBounds, GRID_CELL);
+        int waterTop = tankBounds.y + FEED_TOP_MARGIN;
+        this.water = new WaterField(tankBounds.x, waterTop, tankBounds.width, tankFloorY() - waterTop, WATER_CELL);
+
+        // Seaweed garden along the floor
+        int floorY = tankFloorY();
+        int clumps = 7;
+        for (int i = 0; i < clumps; i++) {
+            double nx = tankBounds.x + (i + 0.5) * (tankBounds.width / (double) clumps);
+            seaweeds.add(new Seaweed(nx, floorY, 40 + rng.nextInt(35), rng));
+        }
+
+        // Seed fish
+        fish.add(makeMidWaterFish(18));
+        fish.add(makeBottomFeeder(16));
+        fish.add(makeAlgaeEater(16));
+    }
+
+    /** Advances the world by one fixed step. */
+    void step() { step(FIXED_DT); }
+
+    /** Runs the per-entity phases of {@link #step()} on {@code pool}; null goes back to single-threaded. */
+    void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+        chunkRunners = new ChunkRunner[pool == null ? 0 : pool.getParallelism()];
+        for (int i = 0; i < chunkRunners.length; i++) chunkRunners[i] = new ChunkRunner(i);
+    }
+
+    private void step(double dt) {
+        tick++;
+        timeSeconds += dt;
+
+        stepDt = dt;
+        profiler.beginTick();
+
+        // Particles settle independently (in parallel chunks), then foul the water where they lie (in order)
+        if (pelletLanded.length < pellets.size) pelletLanded = new boolean[pellets.x.length];
+        forEachChunk(pellets.size, settlePellets);
+        foodEventCount = 0;
+        foodEventsOverflow = false;
+        for (int i = 0; i < pellets.size; i++) {
+            if ((i >= pelletsKnown || pelletLanded[i]) && !pellets.removed[i]) {
+                if (foodEventCount < FOOD_EVENTS_MAX) foodEvents[foodEventCount++] = i;
+                else foodEventsOverflow = true;
+            }
+            if (pellets.age[i] > 12) { // algae growth if pellet lingers
+                int c = water.cell(pellets.x[i], pellets.y[i]);
+                water.addAlgae(c, 2.2 * dt);
+                water.addDirt(c, 1.6 * dt);
+            }
+        }
+        profiler.mark(TickProfiler.PELLETS);
+
+        forEachChunk(poops.size, settlePoops);
+        for (int i = 0; i < poops.size; i++) water.addDirt(water.cell(poops.x[i], poops.y[i]), 0.18 * dt);
+        profiler.mark(TickProfiler.POOPS);
+
+        forEachChunk(corpses.size, settleCorpses);
+        for (int i = 0; i < corpses.size; i++) {
+            if (corpses.settled[i]) { // decomposing
+                int c = water.cell(corpses.x[i], corpses.y[i]);
+                water.addDirt(c, 0.25 * dt);
+                water.addAlgae(c, 0.18 * dt);
+            }
+        }
+        profiler.mark(TickProfiler.CORPSES);
+
+        // Particles are done moving for this tick; index them for the neighborhood queries below
+        index(pelletGrid, pellets);
+        index(poopGrid, poops);
+        index(corpseGrid, corpses);
+        profiler.mark(TickProfiler.INDEX);
+
+        // Seaweed cleans nearby poop and consumes settled corpses
+        double[] crad = corpses.radius, cdecay = corpses.decay;
+        boolean[] csettled = corpses.settled;
+        double maxCorpseRadius = 0;
+        for (int i = 0; i < corpses.size; i++) maxCorpseRadius = Math.max(maxCorpseRadius, crad[i]);
+        for (int w = 0; w < seaweeds.size(); w++) {
+            Seaweed s = seaweeds.get(w);
+            s.phase += dt * 1.0; // sway animation
+            double sx = s.x, sy = s.y - s.h * 0.5;
+            int sc = water.cell(sx, sy);
+
+            // Clean poop
+            double cleanedPoops = 0;
+            int cx0 = poopGrid.cellX(sx - s.cleanRadius), cx1 = poopGrid.cellX(sx + s.cleanRadius);
+            int cy0 = poopGrid.cellY(sy - s.cleanRadius), cy1 = poopGrid.cellY(sy + s.cleanRadius);
+            for (int gy = cy0; gy <= cy1; gy++) {
+                for (int gx = cx0; gx <= cx1; gx++) {
+                    for (int k = poopGrid.start(gx, gy), end = poopGrid.end(gx, gy); k < end; k++) {
+                        if (dist(sx, sy, poopGrid.x(k), poopGrid.y(k)) < s.cleanRadius) {
+                            poops.removed[poopGrid.id(k)] = true;
+                            cleanedPoops += 1;
+                        }
+                    }
+                }
+            }
+            if (cleanedPoops > 0) {
+                water.addDirt(sc, -0.6 * cleanedPoops);
+                water.addAlgae(sc, -0.2 * cleanedPoops);
+            }
+
+            // Eat settled corpses
+            double reach = s.cleanRadius + maxCorpseRadius;
+            cx0 = corpseGrid.cellX(sx - reach); cx1 = corpseGrid.cellX(sx + reach);
+            cy0 = corpseGrid.cellY(sy - reach); cy1 = corpseGrid.cellY(sy + reach);
+            for (int gy = cy0; gy <= cy1; gy++) {
+                for (int gx = cx0; gx <= cx1; gx++) {
+                    for (int k = corpseGrid.start(gx, gy), end = corpseGrid.end(gx, gy); k < end; k++) {
+                        int c = corpseGrid.id(k);
+                        if (csettled[c] && !corpses.removed[c]) {
+                            if (dist(sx, sy, corpseGrid.x(k), corpseGrid.y(k)) < s.cleanRadius + crad[c]) {
+                                double bite = 0.35 * s.eatRate * dt;
+                                cdecay[c] += bite;
+                                water.addDirt(sc, -0.1 * bite);
+                                water.addAlgae(sc, -0.06 * bite);
+                                if (cdecay[c] >= 1.0) {
+                                    corpses.removed[c] = true; // consumed
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        profiler.mark(TickProfiler.SEAWEED);
+
+        // Filter effect
+        // (the whole volume circulates through it, so it works on every cell alike)
+        if (filterOn) {
+            double cleanRate = tuning.cleanRate;
+            water.addAlgaeEverywhere(-cleanRate * dt);
+            water.addDirtEverywhere(-(cleanRate * 0.85) * dt);
+        } else {
+            water.addDirtEverywhere(0.28 * dt);
+        }
+        profiler.mark(TickProfiler.FILTER);
+
+        // Fish behavior + aging (fish only touch themselves here; poops are spawned afterwards in list order)
+        forEachChunk(fish.size(), behaveFish);
+        for (int i = 0; i < fish.size(); i++) {
+            Fish f = fish.get(i);
+            if (f.poopDue) {
+                poops.add(f.poopX, f.poopY, 3);
+                f.poopDue = false;
+            }
+        }
+        profiler.mark(TickProfiler.BEHAVIOR);
+
+        // Predation pass (hungrier fish more aggressive)
+        // Broad phase: only predator/prey pairs whose reach circles (size * 0.38) overlap come back as candidates
+        predationBroadPhase.clear();
+        for (int i = 0; i < fish.size(); i++) {
+            Fish f = fish.get(i);
+            if (f.alive) predationBroadPhase.insert(i, f.x, f.y, f.size * 0.38);
+        }
+        predationBroadPhase.sweep();
+        predationPairsTested = 0;
+        for (int i = 0; i < fish.size(); i++) {
+            Fish f = fish.get(i);
+            if (!f.alive) continue;
+            if (f.hunger < 0.40) continue; // must be notably hungry
+            // candidates come back in list order, so the first hit is the prey the all-pairs scan would pick
+            for (int k = predationBroadPhase.neighborStart(i), end = predationBroadPhase.neighborEnd(i); k < end; k++) {
+                Fish other = fish.get(predationBroadPhase.neighbor(k));
+                if (!other.alive) continue;
+                if (other.size < f.size * 0.6) {
+                    predationPairsTested++;
+                    if (dist(f.x, f.y, other.x, other.y) < (f.size + other.size) * 0.38) {
+                        other.alive = false;                  // will convert to corpse below
+                        f.hunger = Math.max(0, f.hunger - 0.6);
+                        f.stomachTimer = 8.0;
+                        f.pendingMealGrowth += f.growthPerMeal;
+                        break;
+                    }
+                }
+            }
+        }
+        profiler.mark(TickProfiler.PREDATION);
+
+        // Eating pellets / algae (with appetite threshold)
+        for (int i = 0; i < fish.size(); i++) {
+            Fish f = fish.get(i);
+            if (!f.alive) continue;
+            switch (f.type) {
+                case MID:
+                case BOTTOM: {
+                    if (f.hunger >= f.eatThreshold) {
+                        int target = foodTarget(f);
+                        if (target >= 0 && dist(f.x, f.y, pellets.x[target], pellets.y[target]) < f.size * 0.5 + pellets.radius[target]) {
+                            eatPellet(f, target);
+                            f.foodTarget = -1;
+                            f.foodRecheck = 0; // look for the next one right away
+                        }
+                    }
+                    break;
+                }
+                case ALGAE: {
+                    int c = water.cell(f.x, f.y);
+                    if (f.hunger >= f.eatThreshold && water.algae[c] > 2) {
+                        boolean nearWall = f.x < tankBounds.x + 40 || f.x > tankBounds.x + tankBounds.width - 40
+                                || f.y > tankFloorY() - 40;
+                        double rate = nearWall ? 10.5 : 2.0;
+                        double take = Math.min(water.algae[c] / water.cells, rate * dt); // what the cell holds, in tank units
+                        water.addAlgae(c, -take);
+                        water.addDirt(c, -0.05 * take * dt);
+                        f.hunger = Math.max(0, f.hunger - 0.12 * dt);
+                        if (take > 0) {
+                            f.stomachTimer = Math.max(f.stomachTimer, 5.0);
+                            f.pendingMealGrowth += f.growthPerMeal * 0.30 * dt; // nibbling growth
+                        }
+                    }
+                    break;
+                }
+                default: break;
+            }
+        }
+        profiler.mark(TickProfiler.EATING);
+
+        // Convert newly dead fish to corpses
+        for (int i = 0; i < fish.size(); i++) {
+            Fish f = fish.get(i);
+            if (!f.alive && !f.convertedToCorpse) {
+                corpses.add(f.x, f.y, f.size * 0.55, 0.02);
+                f.convertedToCorpse = true;
+            }
+        }
+        // Stable in-place compaction (removeIf would allocate a bit set whenever a fish died);
+        // the dead go back to the pool for the next addFish
+        int live = 0;
+        for (int i = 0, n = fish.size(); i < n; i++) {
+            Fish f = fish.get(i);
+            if (f.alive || !f.convertedToCorpse) fish.set(live++, f);
+            else if (fishPool.size() < FISH_POOL_MAX) fishPool.push(f);
+        }
+        while (fish.size() > live) fish.remove(fish.size() - 1);
+        profiler.mark(TickProfiler.CONVERSION);
+
+        // Cleanup removed entities
+        // (re-read the columns: spawning above may have grown them)
+        for (int i = 0; i < poops.size; i++) {
+            if (poops.age[i] > 120) poops.removed[i] = true; // old poop dissolves
+        }
+        for (int i = 0; i < corpses.size; i++) {
+            if (corpses.decay[i] >= 1.0 || corpses.age[i] > 300) corpses.removed[i] = true;
+        }
+        pellets.compact();
+        for (int i = 0; i < fish.size(); i++) {
+            Fish f = fish.get(i);
+            if (f.foodTarget >= 0) f.foodTarget = pellets.forward[f.foodTarget];
+        }
+        pelletsKnown = pellets.size;
+        poops.compact();
+        corpses.compact();
+        profiler.mark(TickProfiler.CLEANUP);
+
+        water.diffuse(WATER_DIFFUSION);
+        dirt = water.meanDirt();
+        algaeLevel = water.meanAlgae();
+        profiler.mark(TickProfiler.WATER);
+        profiler.endTick(this);
+    }
+
+    /* ===================== Commands ===================== */
+
+    void addFish(FishType type) {
+        switch (type) {
+            case MID: fish.add(makeMidWaterFish(14 + rng.nextInt(8))); break;
+            case BOTTOM: fish.add(makeBottomFeeder(14 + rng.nextInt(6))); break;
+            case ALGAE: fish.add(makeAlgaeEater(14 + rng.nextInt(6))); break;
+            default: break;
+        }
+    }
+
+    void toggleFilter() { filterOn = !filterOn; }
+
+    void reduceAlgae() {
+        water.addAlgaeEverywhere(-25);
+        algaeLevel = water.meanAlgae();
+    }
+
+    void setCursor(double x, double y) { cursorX = x; cursorY = y; }
+
+    /** True when a click at this height lands in the air band, i.e. should feed rather than shake. */
+    boolean inFeedBand(double y) { return y <= tankBounds.y + FEED_TOP_MARGIN; }
+
+    void dropPelletAt(double x) {
+        double y = tankBounds.y + 5; // drop from the air band
+        pellets.add(x, y, 4);
+    }
+
+    /** Tapping the glass at (x, y): every fish darts away and ignores food/cursor for a moment. */
+    void shakeTank(double x, double y) {
+        for (Fish f : fish) {
+            if (!f.alive) continue;
+            double ax = f.x - x, ay = f.y - y, inv = invLength(ax, ay); // away from the tap
+            double kick = f.speed * (2.0 + rng.nextDouble() * 0.8);
+            f.vx = ax * inv * kick + (rng.nextDouble() - 0.5) * f.speed * 0.4;
+            f.vy = ay * inv * kick + (rng.nextDouble() - 0.5) * f.speed * 0.4;
+            f.scareTimer = 0.6 + rng.nextDouble() * 0.7;
+        }
+        water.addDirtEverywhere(0.8); // shaking stirs up the whole tank
+        dirt = water.meanDirt();
+    }
+
+    /**
+     * Order-sensitive hash of the evolving world state (not the RNG), used to check that a replay or
+     * a parallel run matched the original bit for bit.
+     */
+    long stateHash() {
+        long h = tick;
+        for (int i = 0; i < water.dirt.length; i++) {
+            h = mix(h, water.dirt[i]);
+            h = mix(h, water.algae[i]);
+        }
+        h = h * 31 + (filterOn ? 1 : 0);
+        for (int i = 0; i < fish.size(); i++) {
+            Fish f = fish.get(i);
+            h = h * 31 + f.species.id;
+            h = mix(h, f.x); h = mix(h, f.y); h = mix(h, f.vx); h = mix(h, f.vy);
+            h = mix(h, f.size); h = mix(h, f.hunger); h = mix(h, f.ageSeconds);
         }
+        h = hashStore(h, pellets);
+        h = hashStore(h, poops);
+        h = hashStore(h, corpses);
+        for (int i = 0; i < corpses.size; i++) h = mix(h, corpses.decay[i]);
+        return h;
+    }
 
-        // Poops sink a bit, add to dirt slowly
-        for (Poop poop : poops) {
-            poop.age += dt;
-            if (!poop.settled) {
-                poop.vy += 55 * dt;
-                poop.vy *= (1.0 - 0.18 * dt);
-                if (poop.vy > 110) poop.vy = 110;
-                poop.y += poop.vy * dt;
-                if (poop.y >= tankFloorY() - poop.radius) {
-                    poop.y = tankFloorY() - poop.radius;
-                    poop.settled = true;
-                }
-            }
-            dirt = Math.min(100, dirt + 0.18 * dt);
+    private static long hashStore(long h, ParticleStore s) {
+        h = h * 31 + s.size;
+        for (int i = 0; i < s.size; i++) {
+            h = mix(h, s.x[i]); h = mix(h, s.y[i]); h = mix(h, s.vy[i]); h = mix(h, s.age[i]);
         }
+        return h;
+    }
 
-        // Corpses: sink, settle, decompose; contribute to dirt/algae
-        for (Corpse c : corpses) {
-            if (!c.settled) {
-                c.vy += 40 * dt;             // heavier than poop
-                c.vy *= (1.0 - 0.20 * dt);
-                if (c.vy > 120) c.vy = 120;
-                c.y += c.vy * dt;
-                if (c.y >= tankFloorY() - c.radius) {
-                    c.y = tankFloorY() - c.radius;
-                    c.vy = 0;
-                    c.settled = true;
+    private static long mix(long h, double v) { return h * 31 + Double.doubleToLongBits(v); }
+
+    /* ===================== Chunked phases ===================== */
+
+    private void settlePellets(int chunk, int from, int to) {
+        double dt = stepDt, floorY = tankFloorY();
+        double[] py = pellets.y, pvy = pellets.vy, prad = pellets.radius, page = pellets.age;
+        boolean[] psettled = pellets.settled, landed = pelletLanded;
+        for (int i = from; i < to; i++) {
+            page[i] += dt;
+            landed[i] = false;
+            if (!psettled[i]) {
+                pvy[i] += 18 * dt;             // gentle gravity
+                pvy[i] *= (1.0 - 0.22 * dt);   // water drag
+                if (pvy[i] > 80) pvy[i] = 80;  // soft terminal velocity
+                py[i] += pvy[i] * dt;
+
+                if (py[i] >= floorY - prad[i]) {
+                    py[i] = floorY - prad[i];
+                    pvy[i] = 0;
+                    psettled[i] = true;
+                    landed[i] = true;
                 }
-            } else {
-                c.decay += c.decayRate * dt;
-                dirt = Math.min(100, dirt + 0.25 * dt);
-                algaeLevel = Math.min(100, algaeLevel + 0.18 * dt);
             }
-            c.age += dt;
         }
+    }
 
-        // Seaweed cleans nearby poop and consumes settled corpses
-        for (Seaweed s : seaweeds) {
-            s.phase += dt * 1.0; // sway animation
-
-            // Clean poop
-            double cleanedPoops = 0;
-            for (Poop poop : poops) {
-                if (dist(s.x, s.y - s.h * 0.5, poop.x, poop.y) < s.cleanRadius) {
-                    poop.toRemove = true;
-                    cleanedPoops += 1;
+    /** Poops sink a bit (and add to dirt slowly, see step). */
+    private void settlePoops(int chunk, int from, int to) {
+        double dt = stepDt, floorY = tankFloorY();
+        double[] oy = poops.y, ovy = poops.vy, orad = poops.radius, oage = poops.age;
+        boolean[] osettled = poops.settled;
+        for (int i = from; i < to; i++) {
+            oage[i] += dt;
+            if (!osettled[i]) {
+                ovy[i] += 55 * dt;
+                ovy[i] *= (1.0 - 0.18 * dt);
+                if (ovy[i] > 110) ovy[i] = 110;
+                oy[i] += ovy[i] * dt;
+                if (oy[i] >= floorY - orad[i]) {
+                    oy[i] = floorY - orad[i];
+                    osettled[i] = true;
                 }
             }
-            if (cleanedPoops > 0) {
-                dirt = Math.max(0, dirt - 0.6 * cleanedPoops);
-                algaeLevel = Math.max(0, algaeLevel - 0.2 * cleanedPoops);
-            }
+        }
+    }
 
-            // Eat settled corpses
-            for (Corpse c : corpses) {
-                if (c.settled && !c.consumed) {
-                    if (dist(s.x, s.y - s.h * 0.5, c.x, c.y) < s.cleanRadius + c.radius) {
-                        double bite = 0.35 * s.eatRate * dt;
-                        c.decay += bite;
-                        dirt = Math.max(0, dirt - 0.1 * bite);
-                        algaeLevel = Math.max(0, algaeLevel - 0.06 * bite);
-                        if (c.decay >= 1.0) {
-                            c.consumed = true;
-                        }
-                    }
+    /** Corpses: sink, settle, decompose (and contribute to dirt/algae, see step). */
+    private void settleCorpses(int chunk, int from, int to) {
+        double dt = stepDt, floorY = tankFloorY();
+        double[] cy = corpses.y, cvy = corpses.vy, crad = corpses.radius, cage = corpses.age;
+        double[] cdecay = corpses.decay, cdecayRate = corpses.decayRate;
+        boolean[] csettled = corpses.settled;
+        for (int i = from; i < to; i++) {
+            if (!csettled[i]) {
+                cvy[i] += 40 * dt;             // heavier than poop
+                cvy[i] *= (1.0 - 0.20 * dt);
+                if (cvy[i] > 120) cvy[i] = 120;
+                cy[i] += cvy[i] * dt;
+                if (cy[i] >= floorY - crad[i]) {
+                    cy[i] = floorY - crad[i];
+                    cvy[i] = 0;
+                    csettled[i] = true;
                 }
+            } else {
+                cdecay[i] += cdecayRate[i] * dt;
             }
+            cage[i] += dt;
         }
+    }
 
-        // Filter effect
-        if (filterOn) {
-            double cleanRate = 6.5; // strength
-            double takeAlg = Math.min(algaeLevel, cleanRate * dt);
-            algaeLevel -= takeAlg;
-            dirt = Math.max(0, dirt - (cleanRate * 0.85) * dt);
-        } else {
-            dirt = Math.min(100, dirt + 0.28 * dt);
-        }
-
-        // Fish behavior + aging
-        for (Fish f : fish) {
+    private void behaveFish(int chunk, int from, int to) {
+        double dt = stepDt;
+        for (int i = from; i < to; i++) {
+            Fish f = fish.get(i);
             f.ageSeconds += dt;
             if (!f.alive) continue;
 
             // appetite increases slowly
             f.hunger = Math.min(1.0, f.hunger + f.hungerRate * dt);
+            f.foodRecheck -= dt;
 
             // scheduled poop after eating
             if (f.stomachTimer > 0) {
                 f.stomachTimer -= dt;
                 if (f.stomachTimer <= 0) {
-                    Poop poop = new Poop(f.x, f.y + f.size * 0.2);
-                    poops.add(poop);
+                    f.poopDue = true;
+                    f.poopX = f.x;
+                    f.poopY = f.y + f.size * 0.2;
                 }
             }
 
@@ -300,7 +1659,7 @@ class AquariumPanel extends JPanel implements ActionListener, MouseListener, Mou
 
             // Natural mortality
             if (f.ageSeconds >= f.lifespanSeconds) {
-                f.alive = false; // conversion to corpse handled after loop
+                f.alive = false; // conversion to corpse handled after the step's fish passes
             }
 
             // Decide target/steering
@@ -319,83 +1678,75 @@ class AquariumPanel extends JPanel implements ActionListener, MouseListener, Mou
             // keep in tank (respect air band at top)
             bounceFishWithinTank(f);
         }
+    }
 
-        // Predation pass (hungrier fish more aggressive)
-        for (Fish f : fish) {
-            if (!f.alive) continue;
-            if (f.hunger < 0.40) continue; // must be notably hungry
-            for (Fish other : fish) {
-                if (other == f || !other.alive) continue;
-                if (other.size < f.size * 0.6) {
-                    if (dist(f.x, f.y, other.x, other.y) < (f.size + other.size) * 0.38) {
-                        other.alive = false;                  // will convert to corpse below
-                        f.hunger = Math.max(0, f.hunger - 0.6);
-                        f.stomachTimer = 8.0;
-                        f.pendingMealGrowth += f.growthPerMeal;
-                        break;
-                    }
-                }
-            }
+    /**
+     * Runs {@code body} over [0, n) in fixed {@link #CHUNK}-sized pieces, on the pool when one is set.
+     * Bodies only write their own slots and leave shared state (like the water field) to a serial
+     * pass in slot order afterwards, so serial and parallel runs of the same seed stay bit-for-bit identical.
+     * On the pool, the caller and the same {@link ChunkRunner}s take the chunks every time, and waiting is
+     * done by {@link #awaitDone} rather than a join (one that has to park allocates a wait node), so a phase
+     * allocates nothing.
+     */
+    private void forEachChunk(int n, ChunkBody body) {
+        int chunks = (n + CHUNK - 1) / CHUNK;
+        if (pool == null || chunks < 2) {
+            for (int c = 0; c < chunks; c++) body.run(c, c * CHUNK, Math.min(n, (c + 1) * CHUNK));
+        } else {
+            chunkBody = body;
+            chunkN = n;
+            chunkCount = chunks;
+            nextChunk.set(0);
+            ChunkRunner first = chunkRunners[0];
+            first.reinitialize();
+            pool.execute(first);
+            takeChunks();
+            awaitDone(first);
+            first.join(); // rethrows a failure; it is done, so this doesn't wait
         }
+    }
 
-        // Eating pellets / algae (with appetite threshold)
-        for (Fish f : fish) {
-            if (!f.alive) continue;
-            switch (f.type) {
-                case MID: {
-                    if (f.hunger >= f.eatThreshold) {
-                        Pellet target = nearestPellet(f.x, f.y, false);
-                        if (target != null && dist(f.x, f.y, target.x, target.y) < f.size * 0.5 + target.radius) {
-                            eatPellet(f, target);
-                        }
-                    }
-                    break;
-                }
-                case BOTTOM: {
-                    if (f.hunger >= f.eatThreshold) {
-                        Pellet target = nearestPellet(f.x, f.y, true);
-                        if (target != null && dist(f.x, f.y, target.x, target.y) < f.size * 0.5 + target.radius) {
-                            eatPellet(f, target);
-                        }
-                    }
-                    break;
-                }
-                case ALGAE: {
-                    if (f.hunger >= f.eatThreshold && algaeLevel > 2) {
-                        boolean nearWall = f.x < tankBounds.x + 40 || f.x > tankBounds.x + tankBounds.width - 40
-                                || f.y > tankFloorY() - 40;
-                        double rate = nearWall ? 10.5 : 2.0;
-                        double take = Math.min(algaeLevel, rate * dt);
-                        algaeLevel -= take;
-                        dirt = Math.max(0, dirt - 0.05 * take * dt);
-                        f.hunger = Math.max(0, f.hunger - 0.12 * dt);
-                        if (take > 0) {
-                            f.stomachTimer = Math.max(f.stomachTimer, 5.0);
-                            f.pendingMealGrowth += f.growthPerMeal * 0.30 * dt; // nibbling growth
-                        }
-                    }
-                    break;
-                }
-                default: break;
-            }
+    /** Waits for {@code t} without parking: spins a little, then yields the core (to the worker, if they share one). */
+    private static void awaitDone(ForkJoinTask<?> t) {
+        for (int spins = 0; !t.isDone(); spins++) {
+            if (spins < 200) Thread.onSpinWait();
+            else Thread.yield();
         }
+    }
 
-        // Convert newly dead fish to corpses
-        for (Fish f : fish) {
-            if (!f.alive && !f.convertedToCorpse) {
-                Corpse c = new Corpse(f.x, f.y, f.size * 0.55);
-                corpses.add(c);
-                f.convertedToCorpse = true;
-            }
+    private void takeChunks() {
+        for (int c; (c = nextChunk.getAndIncrement()) < chunkCount; ) {
+            chunkBody.run(c, c * CHUNK, Math.min(chunkN, (c + 1) * CHUNK));
         }
-        fish.removeIf(ff -> !ff.alive && ff.convertedToCorpse);
+    }
 
-        // Cleanup removed entities
-        pellets.removeIf(p -> p.eaten);
-        poops.removeIf(p -> p.toRemove || p.age > 120); // old poop dissolves
-        corpses.removeIf(c -> c.consumed || c.decay >= 1.0 || c.age > 300);
+    interface ChunkBody { void run(int chunk, int from, int to); }
 
-        updateStatus();
+    /**
+     * Takes the current phase's chunks until none are left. Runner 0, the one the caller starts, first forks as
+     * many others as can help, and at the end takes back those not yet started and spins until the rest are done.
+     */
+    @SuppressWarnings("serial") // never serialized
+    private final class ChunkRunner extends RecursiveAction {
+        private final int index;
+
+        ChunkRunner(int index) { this.index = index; }
+
+        @Override
+        protected void compute() {
+            int helpers = index == 0 ? Math.min(chunkRunners.length, chunkCount - 1) - 1 : 0; // the caller takes chunks too
+            for (int i = 1; i <= helpers; i++) {
+                chunkRunners[i].reinitialize();
+                chunkRunners[i].fork();
+            }
+            takeChunks();
+            for (int i = helpers; i >= 1; i--) {
+                ChunkRunner r = chunkRunners[i];
+                if (r.tryUnfork()) continue; // never started
+                awaitDone(r);
+                r.join();
+            }
+        }
     }
 
     private void chooseAndChaseTarget(Fish f, double dt) {
@@ -420,24 +1771,25 @@ class AquariumPanel extends JPanel implements ActionListener, MouseListener, Mou
         }
 
         // Cursor attraction
-        if (tankBounds.contains(mouse)) {
-            double dToMouse = dist(f.x, f.y, mouse.x, mouse.y);
+        if (tankBounds.contains(cursorX, cursorY)) {
+            double mx = cursorX - f.x, my = cursorY - f.y;
+            double dToMouse = Math.hypot(mx, my);
             if (dToMouse < CURSOR_ATTRACT_RADIUS) {
-                Point2D dir = dirTo(f.x, f.y, mouse.x, mouse.y);
+                double inv = dToMouse < 1e-6 ? 0 : 1 / dToMouse;
                 double followSpeed = f.speed * (0.8 + 0.4 * (1.0 - Math.min(1.0, dToMouse / CURSOR_ATTRACT_RADIUS)));
-                desiredVX = dir.x * followSpeed;
-                desiredVY = dir.y * followSpeed;
+                desiredVX = mx * inv * followSpeed;
+                desiredVY = my * inv * followSpeed;
             }
         }
 
         // Food attraction (only if hungry)
         if (f.hunger >= f.eatThreshold) {
-            Pellet target = (f.type == FishType.BOTTOM) ? nearestPellet(f.x, f.y, true) : nearestPellet(f.x, f.y, false);
-            if (target != null) {
-                Point2D dir = dirTo(f.x, f.y, target.x, target.y);
+            int target = foodTarget(f);
+            if (target >= 0) {
+                double px = pellets.x[target] - f.x, py = pellets.y[target] - f.y, inv = invLength(px, py);
                 double seek = (f.type == FishType.BOTTOM) ? 0.9 : 1.0;
-                desiredVX = lerp(desiredVX, dir.x * f.speed * seek, 0.6);
-                desiredVY = lerp(desiredVY, dir.y * f.speed * seek, 0.6);
+                desiredVX = lerp(desiredVX, px * inv * f.speed * seek, 0.6);
+                desiredVY = lerp(desiredVY, py * inv * f.speed * seek, 0.6);
             }
         }
 
@@ -447,7 +1799,8 @@ class AquariumPanel extends JPanel implements ActionListener, MouseListener, Mou
         f.vy += (desiredVY - f.vy) * Math.min(1, steer * dt);
 
         // Water quality affects max speed a bit
-        double speedFactor = 1.0 - Math.min(0.5, (dirt + algaeLevel) / 300.0);
+        int c = water.cell(f.x, f.y);
+        double speedFactor = 1.0 - Math.min(0.5, (water.dirt[c] + water.algae[c]) / 300.0);
         double maxV = f.speed * speedFactor;
         double v = Math.hypot(f.vx, f.vy);
         if (v > maxV) {
@@ -456,12 +1809,12 @@ class AquariumPanel extends JPanel implements ActionListener, MouseListener, Mou
         }
     }
 
-    private void eatPellet(Fish f, Pellet p) {
-        p.eaten = true;
+    private void eatPellet(Fish f, int p) {
+        pellets.removed[p] = true;
         f.hunger = Math.max(0, f.hunger - 0.6);
         f.stomachTimer = Math.max(f.stomachTimer, 6.0 + rng.nextDouble() * 3.0); // poop later
         f.pendingMealGrowth += f.growthPerMeal;                                  // accumulate growth
-        dirt = Math.min(100, dirt + 0.5); // some waste always
+        water.addDirt(water.cell(f.x, f.y), 0.5); // some waste always
     }
 
     private void bounceFishWithinTank(Fish f) {
@@ -476,279 +1829,671 @@ class AquariumPanel extends JPanel implements ActionListener, MouseListener, Mou
         if (f.y > bottom) { f.y = bottom; f.vy = -Math.abs(f.vy) * 0.5; }
     }
 
-    private int tankFloorY() { return tankBounds.y + tankBounds.height - 10; }
+    int tankFloorY() { return tankBounds.y + tankBounds.height - 10; }
 
-    private Pellet nearestPellet(double x, double y, boolean onlySettled) {
-        Pellet best = null;
-        double bestD2 = Double.POSITIVE_INFINITY;
-        for (Pellet p : pellets) {
-            if (onlySettled && !p.settled) continue;
-            if (p.eaten) continue;
-            double dx = p.x - x, dy = p.y - y;
-            double d2 = dx * dx + dy * dy;
-            if (d2 < bestD2) { bestD2 = d2; best = p; }
-        }
-        return best;
+    /** Slot of the nearest uneaten pellet, or -1. */
+    private int nearestPellet(double x, double y, boolean onlySettled) {
+        return pelletGrid.nearest(x, y, onlySettled ? settledPellet : anyPellet);
     }
 
-    private void updateStatus() {
-        statusLabel.setText(String.format(
-                "Fish: %d | Pellets: %d | Poops: %d | Corpses: %d | Dirt: %.1f | Algae: %.1f | Filter: %s | Time: %ds%s",
-                fish.size(), pellets.size(), poops.size(), corpses.size(), dirt, algaeLevel, (filterOn ? "ON" : "OFF"),
-                (int) timeSeconds, (paused ? " (PAUSED)" : "")
-        ));
+    /**
+     * The pellet {@code f} goes for (bottom feeders: settled ones only), or -1. Cached per fish and shared
+     * by steering and eating: a full grid search only runs when the target was eaten, when
+     * {@link #FOOD_RECHECK} has elapsed (pellets and fish drift), or when a tick brought too many new
+     * pellets to compare; otherwise the cached target (or "none") is only checked against this tick's
+     * new pellets.
+     * Touches nothing but {@code f}, so it is safe in the parallel behavior phase.
+     */
+    private int foodTarget(Fish f) {
+        boolean settledOnly = f.type == FishType.BOTTOM;
+        int t = f.foodTarget;
+        if ((t >= 0 && pellets.removed[t]) || f.foodRecheck <= 0 || foodEventsOverflow) {
+            t = nearestPellet(f.x, f.y, settledOnly);
+            f.foodRecheck = FOOD_RECHECK;
+        } else {
+            double bestD2 = Double.POSITIVE_INFINITY;
+            if (t >= 0) {
+                double dx = pellets.x[t] - f.x, dy = pellets.y[t] - f.y;
+                bestD2 = dx * dx + dy * dy;
+            }
+            for (int k = 0; k < foodEventCount; k++) {
+                int p = foodEvents[k];
+                if (pellets.removed[p] || (settledOnly && !pellets.settled[p])) continue;
+                double dx = pellets.x[p] - f.x, dy = pellets.y[p] - f.y, d2 = dx * dx + dy * dy;
+                if (d2 < bestD2) {
+                    bestD2 = d2;
+                    t = p;
+                }
+            }
+        }
+        f.foodTarget = t;
+        return t;
     }
 
-    /* ===================== Input ===================== */
+    /** Predator/prey relation checked by the broad phase; hunger and size are fixed for the predation pass. */
+    private static boolean canEat(Fish predator, Fish prey) {
+        return predator.hunger >= 0.40 && prey.size < predator.size * 0.6;
+    }
 
-    @Override
-    public void mouseClicked(MouseEvent e) {
-        if (!tankBounds.contains(e.getPoint())) return;
-        if (SwingUtilities.isLeftMouseButton(e)) {
-            // Top-click feeds; lower-click shakes the tank
-            if (e.getY() <= tankBounds.y + FEED_TOP_MARGIN) {
-                dropPelletAt(e.getX());
-            } else {
-                shakeTank(e.getPoint());
-            }
-        } else if (SwingUtilities.isRightMouseButton(e)) {
-            // Right-click also shakes (like tapping glass)
-            shakeTank(e.getPoint());
-        }
+    private void index(SpatialGrid grid, ParticleStore store) {
+        grid.clear();
+        for (int i = 0; i < store.size; i++) grid.insert(i, store.x[i], store.y[i]);
+        grid.build();
     }
 
-    private void dropPelletAt(double x) {
-        double y = tankBounds.y + 5; // drop from the air band
-        pellets.add(new Pellet(x, y));
+    /* ===================== Factory Helpers ===================== */
+
+    private Fish makeMidWaterFish(double size) { return obtainFish(FishType.MID, size); }
+    private Fish makeBottomFeeder(double size) { return obtainFish(FishType.BOTTOM, size); }
+    private Fish makeAlgaeEater(double size) { return obtainFish(FishType.ALGAE, size); }
+
+    /** A recycled dead fish when one is pooled, else a new one; both draw the same random numbers. */
+    private Fish obtainFish(FishType type, double size) {
+        Fish f = fishPool.poll();
+        if (f == null) f = new Fish(type, size, tankBounds, rng);
+        else f.reset(type, size, tankBounds, rng);
+        tuning.applyTo(f);
+        return f;
     }
 
-    private void shakeTank(Point p) {
-        for (Fish f : fish) {
-            if (!f.alive) continue;
-            Point2D dir = dirAway(f.x, f.y, p.x, p.y);
-            double kick = f.speed * (2.0 + rng.nextDouble() * 0.8);
-            f.vx = dir.x * kick + (rng.nextDouble() - 0.5) * f.speed * 0.4;
-            f.vy = dir.y * kick + (rng.nextDouble() - 0.5) * f.speed * 0.4;
-            f.scareTimer = 0.6 + rng.nextDouble() * 0.7;
-        }
-        dirt = Math.min(100, dirt + 0.8); // shaking adds disturbance
+    /* ===================== Math helpers ===================== */
+
+    double dist(double x1, double y1, double x2, double y2) {
+        double dx = x2 - x1, dy = y2 - y1;
+        return Math.hypot(dx, dy);
     }
 
-    @Override public void mousePressed(MouseEvent e) { mouse = e.getPoint(); }
-    @Override public void mouseDragged(MouseEvent e) { mouse = e.getPoint(); }
-    @Override public void mouseReleased(MouseEvent e) { }
-    @Override public void mouseMoved(MouseEvent e) { mouse = e.getPoint(); }
-    @Override public void mouseEntered(MouseEvent e) { }
-    @Override public void mouseExited(MouseEvent e) { }
-    @Override public void keyTyped(KeyEvent e) { }
-    @Override public void keyReleased(KeyEvent e) { }
-    @Override public void keyPressed(KeyEvent e) { addFishKey(Character.toUpperCase(e.getKeyChar())); }
+    /** 1/|(dx, dy)|, or 0 for a (near) zero vector; scale dx and dy by it for a unit direction without allocating. */
+    static double invLength(double dx, double dy) {
+        double d = Math.hypot(dx, dy);
+        return d < 1e-6 ? 0 : 1 / d;
+    }
 
-    /* ===================== Rendering ===================== */
+    double lerp(double a, double b, double t) { return a + (b - a) * t; }
+}
 
-    @Override
-    protected void paintComponent(Graphics g) {
-        super.paintComponent(g);
-        Graphics2D g2 = (Graphics2D) g.create();
-        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+/* ===================== Profiling ===================== */
 
-        paintWater(g2);
+/**
+ * Per-phase timings of {@link AquariumEngine#step}. The stepping thread brackets each phase with
+ * {@link #mark}; every {@link #SUMMARY_EVERY} ticks the rolling window of the last {@link #WINDOW}
+ * ticks is reduced to p50/p99/max per phase and published in {@link #summary}, which the snapshot
+ * (for the overlay) and JMX read. Nothing here allocates on the stepping thread.
+ * Allocation is the stepping thread's own; with a fork/join pool, worker allocations aren't counted.
+ */
+class TickProfiler implements DynamicMBean {
+    static final String[] PHASES = {
+        "pellets", "poops", "corpses", "index", "seaweed", "filter",
+        "behavior", "predation", "eating", "conversion", "cleanup", "water", "total"
+    };
+    static final int PELLETS = 0, POOPS = 1, CORPSES = 2, INDEX = 3, SEAWEED = 4, FILTER = 5,
+            BEHAVIOR = 6, PREDATION = 7, EATING = 8, CONVERSION = 9, CLEANUP = 10, WATER = 11, TOTAL = 12;
+    static final int WINDOW = 600;        // ten seconds of ticks
+    static final int SUMMARY_EVERY = 60;  // re-summarize once a simulated second
+
+    /** Nanoseconds at index phase * 3 + {0: p50, 1: p99, 2: max}. */
+    final AtomicLongArray summary = new AtomicLongArray(PHASES.length * 3);
+    volatile double allocBytesPerTick = -1; // -1 when the JVM can't count per-thread allocation
+    volatile int fish, pellets, poops, corpses;
+
+    private final long[][] samples = new long[PHASES.length][WINDOW];
+    private final long[] scratch = new long[WINDOW];
+    private int cursor, filled;
+    private long tickStart, phaseStart;
+    private long ticks, allocAtSummary = -1;
+    private final com.sun.management.ThreadMXBean allocCounter;
+
+    TickProfiler() {
+        java.lang.management.ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+        allocCounter = mx instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) mx).isThreadAllocatedMemorySupported()
+                ? (com.sun.management.ThreadMXBean) mx : null;
+    }
 
-        // Tank border
-        g2.setColor(new Color(180, 210, 230, 180));
-        g2.setStroke(new BasicStroke(3f));
-        g2.drawRect(tankBounds.x, tankBounds.y, tankBounds.width, tankBounds.height);
+    void beginTick() {
+        tickStart = phaseStart = System.nanoTime();
+    }
 
-        // Floor
-        g2.setColor(new Color(150, 120, 90));
-        g2.fillRect(tankBounds.x, tankFloorY(), tankBounds.width, 10);
+    /** Ends {@code phase}: charges it the time since the previous mark (or the start of the tick). */
+    void mark(int phase) {
+        long now = System.nanoTime();
+        samples[phase][cursor] = now - phaseStart;
+        phaseStart = now;
+    }
 
-        // Seaweed (behind pellets/poop/corpses so it looks planted)
-        for (Seaweed s : seaweeds) paintSeaweed(g2, s);
+    void endTick(AquariumEngine e) {
+        samples[TOTAL][cursor] = phaseStart - tickStart;
+        cursor = (cursor + 1) % WINDOW;
+        filled = Math.min(filled + 1, WINDOW);
+        fish = e.fish.size();
+        pellets = e.pellets.size;
+        poops = e.poops.size;
+        corpses = e.corpses.size;
+        if (++ticks % SUMMARY_EVERY == 0) summarize();
+    }
 
-        // Pellets
-        for (Pellet p : pellets) {
-            g2.setColor(p.settled ? new Color(110, 80, 40) : new Color(160, 120, 60));
-            g2.fill(new Ellipse2D.Double(p.x - p.radius, p.y - p.radius, p.radius * 2, p.radius * 2));
+    private void summarize() {
+        for (int p = 0; p < PHASES.length; p++) {
+            System.arraycopy(samples[p], 0, scratch, 0, filled);
+            Arrays.sort(scratch, 0, filled);
+            summary.set(p * 3, scratch[(filled - 1) / 2]);
+            summary.set(p * 3 + 1, scratch[(int) ((filled - 1) * 0.99)]);
+            summary.set(p * 3 + 2, scratch[filled - 1]);
+        }
+        if (allocCounter != null) {
+            long now = allocCounter.getCurrentThreadAllocatedBytes();
+            if (allocAtSummary >= 0) allocBytesPerTick = (now - allocAtSummary) / (double) SUMMARY_EVERY;
+            allocAtSummary = now;
         }
+    }
 
-        // Poop
-        for (Poop poop : poops) {
-            g2.setColor(new Color(90, 70, 50));
-            g2.fill(new Ellipse2D.Double(poop.x - poop.radius, poop.y - poop.radius, poop.radius * 2, poop.radius * 2));
+    /** Registers with the platform MBean server as {@code AquariumSim:type=TickProfiler}. */
+    void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName("AquariumSim:type=TickProfiler"));
+        } catch (JMException ex) {
+            System.err.println("TickProfiler: JMX registration failed: " + ex);
         }
+    }
 
-        // Corpses
-        for (Corpse c : corpses) {
-            paintCorpse(g2, c);
+    /* JMX: read-only attributes "<phase>P50Micros", "<phase>P99Micros", "<phase>MaxMicros", plus counts */
+
+    private static final String[] STATS = { "P50Micros", "P99Micros", "MaxMicros" };
+    private static final String[] COUNTS = { "Fish", "Pellets", "Poops", "Corpses" };
+
+    @Override
+    public Object getAttribute(String name) throws AttributeNotFoundException {
+        for (int p = 0; p < PHASES.length; p++) {
+            for (int k = 0; k < 3; k++) {
+                if (name.equals(PHASES[p] + STATS[k])) return summary.get(p * 3 + k) / 1e3;
+            }
+        }
+        switch (name) {
+            case "AllocBytesPerTick": return allocBytesPerTick;
+            case "Fish": return fish;
+            case "Pellets": return pellets;
+            case "Poops": return poops;
+            case "Corpses": return corpses;
+            default: throw new AttributeNotFoundException(name);
         }
+    }
 
-        // Fish
-        for (Fish f : fish) {
-            paintFish(g2, f);
+    @Override
+    public AttributeList getAttributes(String[] names) {
+        AttributeList list = new AttributeList();
+        for (String n : names) {
+            try {
+                list.add(new Attribute(n, getAttribute(n)));
+            } catch (AttributeNotFoundException ignored) {
+                // per the DynamicMBean contract, unknown names are left out
+            }
         }
+        return list;
+    }
 
-        // Filter indicator
-        paintFilter(g2);
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException(attribute.getName() + " is read-only");
+    }
 
-        g2.dispose();
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) { return new AttributeList(); }
+
+    @Override
+    public Object invoke(String action, Object[] params, String[] signature) throws ReflectionException {
+        throw new ReflectionException(new NoSuchMethodException(action));
     }
 
-    private void paintWater(Graphics2D g2) {
-        // Air band (top color)
-        g2.setColor(new Color(230, 240, 255));
-        g2.fillRect(tankBounds.x, tankBounds.y, tankBounds.width, FEED_TOP_MARGIN);
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> attrs = new ArrayList<>();
+        for (String phase : PHASES) {
+            for (String stat : STATS) {
+                attrs.add(new MBeanAttributeInfo(phase + stat, "double", "Rolling " + stat + " of the " + phase + " phase", true, false, false));
+            }
+        }
+        attrs.add(new MBeanAttributeInfo("AllocBytesPerTick", "double", "Bytes allocated by the stepping thread per tick (-1 if unsupported)", true, false, false));
+        for (String c : COUNTS) attrs.add(new MBeanAttributeInfo(c, "int", c + " in the tank", true, false, false));
+        return new MBeanInfo(getClass().getName(), "Per-phase AquariumEngine tick timings",
+                attrs.toArray(new MBeanAttributeInfo[0]), null, null, null);
+    }
+}
+
+/* ===================== Simulation Thread & Snapshots ===================== */
+
+/**
+ * Drives an engine on its own thread at the fixed step rate. Commands from the UI are queued and
+ * applied between steps, and a {@link WorldSnapshot} is published after every batch of ticks, so the
+ * engine is only ever touched by this one thread and painting never waits on a step.
+ */
+class SimulationLoop {
+    final AquariumEngine engine;
+    final SnapshotBuffer snapshots = new SnapshotBuffer();
+    private final Queue<Input> commands = new ConcurrentLinkedQueue<>();
+    private InputJournal.Writer journal; // simulation thread only once started
+    private final ScheduledExecutorService thread = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "aquarium-sim");
+        t.setDaemon(true);
+        return t;
+    });
+    private volatile boolean paused = false;
+
+    // Game loop (simulation thread only): real time accumulates in backlogNanos and is paid out in fixed ticks
+    static final long TICK_NANOS = Math.round(AquariumEngine.FIXED_DT * 1e9);
+    static final int MAX_CATCH_UP = 5;  // ticks per wake-up; a larger backlog is dropped rather than chased
+    private long lastWake, backlogNanos;
+    private long ticksDropped;
+    private boolean steppedSincePublish;
+
+    SimulationLoop(AquariumEngine engine) {
+        this.engine = engine;
+        publish(); // so the first paint has something to draw
+    }
 
-        // Water gradient below air band
-        int waterY = tankBounds.y + FEED_TOP_MARGIN;
-        int waterH = tankBounds.height - FEED_TOP_MARGIN;
-        GradientPaint gp = new GradientPaint(
-                tankBounds.x, waterY, waterColorBase.brighter(),
-                tankBounds.x, waterY + waterH, waterColorBase.darker());
-        g2.setPaint(gp);
-        g2.fillRect(tankBounds.x, waterY, tankBounds.width, waterH);
+    void start() {
+        lastWake = System.nanoTime();
+        thread.execute(this::frame);
+    }
 
-        // Dirt / algae tints
-        if (dirt > 0) {
-            float alpha = (float) Math.min(0.6, dirt / 120.0);
-            g2.setColor(new Color(dirtTint.getRed(), dirtTint.getGreen(), dirtTint.getBlue(), (int) (alpha * 255)));
-            g2.fillRect(tankBounds.x, waterY, tankBounds.width, waterH);
+    /**
+     * One wake-up of the game loop: runs as many fixed ticks as real time has accumulated, publishes
+     * once, and sleeps until the next tick is due. At most {@link #MAX_CATCH_UP} ticks run per wake-up;
+     * anything beyond is dropped (and counted), so an overloaded machine runs the tank slower than real
+     * time instead of falling ever further behind. The step size never changes, so neither does the
+     * outcome. Other tasks on the thread (checkpoints) run between wake-ups.
+     */
+    private void frame() {
+        long now = System.nanoTime();
+        backlogNanos += now - lastWake;
+        lastWake = now;
+        int ticks = 0;
+        for (; backlogNanos >= TICK_NANOS && ticks < MAX_CATCH_UP; ticks++) {
+            tick();
+            backlogNanos -= TICK_NANOS;
+        }
+        if (backlogNanos >= TICK_NANOS) {
+            long behind = backlogNanos / TICK_NANOS;
+            ticksDropped += behind;
+            backlogNanos -= behind * TICK_NANOS;
         }
-        if (algaeLevel > 0) {
-            float alpha = (float) Math.min(0.6, algaeLevel / 120.0);
-            g2.setColor(new Color(algaeTint.getRed(), algaeTint.getGreen(), algaeTint.getBlue(), (int) (alpha * 255)));
-            g2.fillRect(tankBounds.x, waterY, tankBounds.width, waterH);
+        if (ticks > 0) publish();
+        try {
+            thread.schedule(this::frame, TICK_NANOS - backlogNanos, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException ex) {
+            // stopped
         }
     }
 
-    private void paintSeaweed(Graphics2D g2, Seaweed s) {
-        g2.setStroke(new BasicStroke(3f));
-        double baseX = s.x;
-        double baseY = s.y;
-        int strands = 5;
-        for (int i = 0; i < strands; i++) {
-            double off = (i - (strands - 1) / 2.0) * 6.0;
-            double h = s.h * (0.8 + i * 0.05);
-            double sway = Math.sin(s.phase + i * 0.8) * 8.0;
-            int x1 = (int) (baseX + off);
-            int y1 = (int) baseY;
-            int x2 = (int) (baseX + off + sway);
-            int y2 = (int) (baseY - h);
-            g2.setColor(new Color(40, 150 + i * 15, 60));
-            g2.drawLine(x1, y1, x2, y2);
+    /** Stops stepping; once the simulation thread has finished, closes the journal (if any) with the final state. */
+    void stop() {
+        thread.shutdownNow();
+        try {
+            thread.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        if (journal != null) {
+            try {
+                journal.finish(engine);
+            } catch (IOException ex) {
+                System.err.println("Journal: " + ex);
+            }
+            journal = null;
         }
     }
 
-    private void paintCorpse(Graphics2D g2, Corpse c) {
-        double bodyLen = c.radius * 3.0;
-        double bodyHt = c.radius * 1.6;
+    /** Saves the world to {@code file} on the simulation thread, between two ticks. */
+    void checkpoint(Path file) {
+        thread.execute(() -> {
+            try {
+                Checkpoint.save(engine, file);
+                System.out.println("Saved tick " + engine.tick + " to " + file);
+            } catch (IOException ex) {
+                System.err.println("checkpoint: " + ex);
+            }
+        });
+    }
 
-        // faded gray-brown, more transparent as it decays
-        float a = (float) Math.max(0.15, 1.0 - c.decay);
-        Color base = new Color(120, 110, 100, (int) (a * 255));
+    /** Records every applied input to {@code journal}; call before {@link #start}. */
+    void record(InputJournal.Writer journal) { this.journal = journal; }
 
-        AffineTransform old = g2.getTransform();
-        g2.translate(c.x, c.y);
-        g2.rotate(Math.PI * 0.5); // sideways
-        g2.setColor(base);
-        g2.fill(new Ellipse2D.Double(-bodyLen * 0.5, -bodyHt * 0.5, bodyLen, bodyHt));
-        g2.setTransform(old);
+    /** Queues a change to the world; it runs on the simulation thread before the next step. */
+    void submit(Input command) { commands.add(command); }
+
+    void togglePause() { paused = !paused; }
+
+    boolean isPaused() { return paused; }
+
+    private void tick() {
+        try {
+            for (Input c; (c = commands.poll()) != null; ) {
+                if (journal != null) journal.write(engine.tick, c);
+                c.applyTo(engine);
+            }
+            if (!paused) {
+                engine.step();
+                steppedSincePublish = true;
+            }
+        } catch (RuntimeException ex) {
+            ex.printStackTrace(); // keep the loop alive; one bad tick shouldn't freeze the tank
+        } catch (IOException ex) {
+            System.err.println("Journal: " + ex + " (recording stopped)");
+            journal = null;
+        }
     }
 
-    private void paintFish(Graphics2D g2, Fish f) {
-        double dir = Math.atan2(f.vy, f.vx);
-        double bodyLen = f.size * 1.6;
-        double bodyHt = f.size * 0.8;
+    /**
+     * Captures the engine into the back buffer and hands it to the reader (normally once per {@link #frame},
+     * also while paused, so queued commands still show up).
+     */
+    void publish() {
+        WorldSnapshot w = snapshots.backBuffer();
+        w.capture(engine);
+        w.stepped = steppedSincePublish;
+        w.ticksDropped = ticksDropped;
+        w.publishedAt = System.nanoTime();
+        steppedSincePublish = false;
+        snapshots.publish();
+    }
+}
 
-        // Base color by species
-        Color base = f.species.baseColor;
+/**
+ * Lock-free triple buffer of snapshots with one writer (the simulation thread) and one reader (the
+ * EDT). The writer fills its private back buffer and swaps it into the shared middle slot; the reader
+ * swaps the middle slot into its private front buffer only when something newer was published.
+ * Neither side ever blocks, and a buffer is never written while the reader holds it.
+ */
+class SnapshotBuffer {
+    private static final int FRESH = 4; // flag bit next to the 2-bit buffer index in middle
 
-        AffineTransform old = g2.getTransform();
-        g2.translate(f.x, f.y);
-        g2.rotate(dir);
+    private final WorldSnapshot[] buffers = { new WorldSnapshot(), new WorldSnapshot(), new WorldSnapshot() };
+    private final AtomicInteger middle = new AtomicInteger(1);
+    private int back = 0;   // writer-owned
+    private int front = 2;  // reader-owned
 
-        // Body
-        g2.setColor(base);
-        g2.fill(new Ellipse2D.Double(-bodyLen * 0.5, -bodyHt * 0.5, bodyLen, bodyHt));
+    /** Writer only: the buffer to fill before {@link #publish()}. */
+    WorldSnapshot backBuffer() { return buffers[back]; }
 
-        // Tail shape depends on species
-        Polygon tail = new Polygon();
-        int tailLen = (int) (bodyLen * (f.species.tailLong ? 0.35 : 0.25));
-        tail.addPoint((int) (-bodyLen * 0.5), 0);
-        tail.addPoint((int) (-bodyLen * 0.5 - tailLen), (int) (-bodyHt * (f.species.tailWide ? 0.5 : 0.35)));
-        tail.addPoint((int) (-bodyLen * 0.5 - tailLen), (int) (bodyHt * (f.species.tailWide ? 0.5 : 0.35)));
-        g2.setColor(base.darker());
-        g2.fill(tail);
+    /** Writer only: hands the filled back buffer to the reader and takes the stale middle one back. */
+    void publish() {
+        back = middle.getAndSet(back | FRESH) & 3;
+    }
 
-        // Fins tint
-        g2.setColor(f.species.finTint);
-        g2.fill(new Ellipse2D.Double(-bodyLen * 0.1, -bodyHt * 0.6, bodyHt * 0.45, bodyHt * 0.25)); // dorsal
-        g2.fill(new Ellipse2D.Double(0, bodyHt * 0.2, bodyHt * 0.5, bodyHt * 0.25));               // ventral
+    /** Reader only: the most recently published snapshot (the same one again if nothing new arrived). */
+    WorldSnapshot latest() {
+        if ((middle.get() & FRESH) != 0) {
+            front = middle.getAndSet(front) & 3;
+        }
+        return buffers[front];
+    }
+}
 
-        // Patterning (stripes or spots)
-        if (f.species.pattern == SpeciesPattern.STRIPES) {
-            g2.setStroke(new BasicStroke(2f));
-            g2.setColor(f.species.patternColor);
-            for (int i = -2; i <= 2; i++) {
-                int x = (int) (i * (bodyLen * 0.15));
-                g2.drawLine(x, (int) (-bodyHt * 0.45), x, (int) (bodyHt * 0.45));
-            }
-        } else if (f.species.pattern == SpeciesPattern.SPOTS) {
-            g2.setColor(f.species.patternColor);
-            for (int i = -1; i <= 1; i++) {
-                double cx = i * (bodyLen * 0.18);
-                g2.fill(new Ellipse2D.Double(cx - bodyHt * 0.12, -bodyHt * 0.12, bodyHt * 0.24, bodyHt * 0.24));
-            }
+/**
+ * Flat copy of everything the renderer draws, taken at the end of a step. Arrays are reused between
+ * captures and only grow, so steady-state publishing allocates nothing. Velocities are kept so the
+ * renderer can place things between the previous tick and this one (position - velocity * lag).
+ */
+class WorldSnapshot {
+    long tick;
+    long publishedAt;          // System.nanoTime() when handed to the reader
+    boolean stepped;           // the world advanced since the previous snapshot (false while paused)
+    long ticksDropped;         // real-time ticks the loop gave up on so far (see SimulationLoop#frame)
+    double timeSeconds, dirt, algaeLevel;
+    boolean filterOn;
+    int pairsTested;
+    final long[] phaseStats = new long[TickProfiler.PHASES.length * 3]; // see TickProfiler#summary
+    double allocBytesPerTick;
+
+    int fishCount;
+    double[] fishX = new double[16], fishY = new double[16], fishVX = new double[16], fishVY = new double[16];
+    double[] fishSize = new double[16];
+    int[] fishSpecies = new int[16];
+
+    int pelletCount;
+    double[] pelletX = new double[16], pelletY = new double[16], pelletR = new double[16], pelletVY = new double[16];
+    boolean[] pelletSettled = new boolean[16];
+
+    int poopCount;
+    double[] poopX = new double[16], poopY = new double[16], poopR = new double[16], poopVY = new double[16];
+
+    int corpseCount;
+    double[] corpseX = new double[16], corpseY = new double[16], corpseR = new double[16], corpseDecay = new double[16];
+    double[] corpseVY = new double[16];
+
+    int waterCols, waterRows;
+    double[] waterDirt = new double[0], waterAlgae = new double[0];
+
+    int seaweedCount;
+    double[] seaweedX = new double[8], seaweedY = new double[8], seaweedH = new double[8], seaweedPhase = new double[8];
+
+    void capture(AquariumEngine e) {
+        tick = e.tick;
+        timeSeconds = e.timeSeconds;
+        dirt = e.dirt;
+        algaeLevel = e.algaeLevel;
+        filterOn = e.filterOn;
+        pairsTested = e.predationPairsTested;
+        for (int i = 0; i < phaseStats.length; i++) phaseStats[i] = e.profiler.summary.get(i);
+        allocBytesPerTick = e.profiler.allocBytesPerTick;
+
+        WaterField wf = e.water;
+        waterCols = wf.cols;
+        waterRows = wf.rows;
+        if (waterDirt.length != wf.dirt.length) {
+            waterDirt = new double[wf.dirt.length];
+            waterAlgae = new double[wf.dirt.length];
+        }
+        System.arraycopy(wf.dirt, 0, waterDirt, 0, waterDirt.length);
+        System.arraycopy(wf.algae, 0, waterAlgae, 0, waterAlgae.length);
+
+        fishCount = e.fish.size();
+        if (fishX.length < fishCount) {
+            int cap = Math.max(fishCount, fishX.length * 2);
+            fishX = new double[cap]; fishY = new double[cap]; fishVX = new double[cap]; fishVY = new double[cap];
+            fishSize = new double[cap];
+            fishSpecies = new int[cap];
+        }
+        for (int i = 0; i < fishCount; i++) {
+            Fish f = e.fish.get(i);
+            fishX[i] = f.x; fishY[i] = f.y; fishVX[i] = f.vx; fishVY[i] = f.vy;
+            fishSize[i] = f.size;
+            fishSpecies[i] = f.species.id;
         }
 
-        // Eye
-        g2.setColor(Color.WHITE);
-        g2.fill(new Ellipse2D.Double(bodyLen * 0.22, -bodyHt * 0.2, bodyHt * 0.25, bodyHt * 0.25));
-        g2.setColor(Color.BLACK);
-        g2.fill(new Ellipse2D.Double(bodyLen * 0.27, -bodyHt * 0.15, bodyHt * 0.12, bodyHt * 0.12));
+        ParticleStore p = e.pellets;
+        pelletCount = p.size;
+        if (pelletX.length < pelletCount) {
+            int cap = Math.max(pelletCount, pelletX.length * 2);
+            pelletX = new double[cap]; pelletY = new double[cap]; pelletR = new double[cap]; pelletVY = new double[cap];
+            pelletSettled = new boolean[cap];
+        }
+        System.arraycopy(p.x, 0, pelletX, 0, pelletCount);
+        System.arraycopy(p.y, 0, pelletY, 0, pelletCount);
+        System.arraycopy(p.radius, 0, pelletR, 0, pelletCount);
+        System.arraycopy(p.settled, 0, pelletSettled, 0, pelletCount);
+        sinkRates(p, pelletVY);
+
+        ParticleStore o = e.poops;
+        poopCount = o.size;
+        if (poopX.length < poopCount) {
+            int cap = Math.max(poopCount, poopX.length * 2);
+            poopX = new double[cap]; poopY = new double[cap]; poopR = new double[cap]; poopVY = new double[cap];
+        }
+        System.arraycopy(o.x, 0, poopX, 0, poopCount);
+        System.arraycopy(o.y, 0, poopY, 0, poopCount);
+        System.arraycopy(o.radius, 0, poopR, 0, poopCount);
+        sinkRates(o, poopVY);
+
+        CorpseStore c = e.corpses;
+        corpseCount = c.size;
+        if (corpseX.length < corpseCount) {
+            int cap = Math.max(corpseCount, corpseX.length * 2);
+            corpseX = new double[cap]; corpseY = new double[cap]; corpseR = new double[cap]; corpseDecay = new double[cap];
+            corpseVY = new double[cap];
+        }
+        System.arraycopy(c.x, 0, corpseX, 0, corpseCount);
+        System.arraycopy(c.y, 0, corpseY, 0, corpseCount);
+        System.arraycopy(c.radius, 0, corpseR, 0, corpseCount);
+        System.arraycopy(c.decay, 0, corpseDecay, 0, corpseCount);
+        sinkRates(c, corpseVY);
+
+        seaweedCount = e.seaweeds.size();
+        if (seaweedX.length < seaweedCount) {
+            int cap = Math.max(seaweedCount, seaweedX.length * 2);
+            seaweedX = new double[cap]; seaweedY = new double[cap]; seaweedH = new double[cap]; seaweedPhase = new double[cap];
+        }
+        for (int i = 0; i < seaweedCount; i++) {
+            Seaweed sw = e.seaweeds.get(i);
+            seaweedX[i] = sw.x; seaweedY[i] = sw.y; seaweedH[i] = sw.h; seaweedPhase[i] = sw.phase;
+        }
+    }
+
+    /** Vertical speed of each particle as of the last step; 0 once settled (poop keeps a stale vy on the floor). */
+    private static void sinkRates(ParticleStore s, double[] out) {
+        for (int i = 0; i < s.size; i++) out[i] = s.settled[i] ? 0 : s.vy[i];
+    }
+}
+
+/* ===================== Record / Replay ===================== */
+
+/** One replayable change to the world: an op code and two integer arguments (pixels or a FishType ordinal). */
+final class Input {
+    static final int ADD_FISH = 1, TOGGLE_FILTER = 2, REDUCE_ALGAE = 3, SET_CURSOR = 4, DROP_PELLET = 5, SHAKE = 6;
 
-        g2.setTransform(old);
+    final int op, a, b;
+
+    Input(int op, int a, int b) {
+        this.op = op; this.a = a; this.b = b;
     }
 
-    private void paintFilter(Graphics2D g2) {
-        int fx = tankBounds.x + tankBounds.width - 28;
-        int fy = tankBounds.y + 10;
-        g2.setColor(filterOn ? new Color(140, 210, 240) : new Color(90, 90, 90));
-        g2.fillRoundRect(fx, fy, 16, 60, 6, 6);
-        g2.setColor(Color.DARK_GRAY);
-        g2.drawRoundRect(fx, fy, 16, 60, 6, 6);
-        if (filterOn) {
-            g2.setColor(new Color(200, 230, 255, 120));
-            g2.fillRect(fx - 6, fy + 12, 6, 30);
+    void applyTo(AquariumEngine e) {
+        switch (op) {
+            case ADD_FISH: e.addFish(FishType.values()[a]); break;
+            case TOGGLE_FILTER: e.toggleFilter(); break;
+            case REDUCE_ALGAE: e.reduceAlgae(); break;
+            case SET_CURSOR: e.setCursor(a, b); break;
+            case DROP_PELLET: e.dropPelletAt(a); break;
+            case SHAKE: e.shakeTank(a, b); break;
+            default: throw new IllegalArgumentException("unknown input op " + op);
         }
     }
+}
 
-    /* ===================== Factory Helpers ===================== */
+/**
+ * Binary input journal. The engine is deterministic given its seed, so a run is fully described by the
+ * inputs applied before each tick. Layout (big-endian, via Data streams):
+ * <pre>
+ *   header : int magic 'AQJ1', short version, long seed, int worldW, int worldH
+ *   event  : varint tickDelta, byte op, zigzag-varint a, zigzag-varint b   (op 1..6, see {@link Input})
+ *   end    : varint tickDelta, byte 0, long stateHash                        (written on a clean shutdown)
+ * </pre>
+ * Tick deltas are relative to the previous record, so a typical mouse-move event is 4-6 bytes.
+ */
+class InputJournal {
+    static final int MAGIC = 0x41514A31; // "AQJ1"
+    static final short VERSION = 1;
+    static final int END = 0;
+
+    static class Writer implements Closeable {
+        private final DataOutputStream out;
+        private long lastTick;
+
+        Writer(Path file, long seed, int worldW, int worldH) throws IOException {
+            out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeLong(seed);
+            out.writeInt(worldW);
+            out.writeInt(worldH);
+        }
 
-    private Fish makeMidWaterFish(double size) { return new Fish(FishType.MID, size, tankBounds, rng); }
-    private Fish makeBottomFeeder(double size) { return new Fish(FishType.BOTTOM, size, tankBounds, rng); }
-    private Fish makeAlgaeEater(double size) { return new Fish(FishType.ALGAE, size, tankBounds, rng); }
+        /** Records {@code in} as applied just before the engine steps past {@code tick}. */
+        void write(long tick, Input in) throws IOException {
+            writeTick(tick);
+            out.writeByte(in.op);
+            writeVarLong(out, zigZag(in.a));
+            writeVarLong(out, zigZag(in.b));
+        }
 
-    /* ===================== Math helpers ===================== */
+        /** Writes the end marker with the engine's final tick and state hash, then closes. */
+        void finish(AquariumEngine e) throws IOException {
+            writeTick(e.tick);
+            out.writeByte(END);
+            out.writeLong(e.stateHash());
+            close();
+        }
 
-    double dist(double x1, double y1, double x2, double y2) {
-        double dx = x2 - x1, dy = y2 - y1;
-        return Math.hypot(dx, dy);
+        private void writeTick(long tick) throws IOException {
+            writeVarLong(out, tick - lastTick);
+            lastTick = tick;
+        }
+
+        @Override
+        public void close() throws IOException { out.close(); }
     }
 
-    Point2D dirTo(double x1, double y1, double x2, double y2) {
-        double dx = x2 - x1, dy = y2 - y1;
-        double d = Math.hypot(dx, dy);
-        if (d < 1e-6) return new Point2D(0, 0);
-        return new Point2D(dx / d, dy / d);
+    static class Reader implements Closeable {
+        private final DataInputStream in;
+        final long seed;
+        final int worldW, worldH;
+
+        // Current record, valid after next() returns true
+        long tick;
+        Input input;
+        // Set once the end marker has been read; -1 when the journal was cut short
+        long endTick = -1, endHash;
+
+        Reader(Path file) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)));
+            if (in.readInt() != MAGIC) throw new IOException(file + " is not an aquarium journal");
+            short version = in.readShort();
+            if (version != VERSION) throw new IOException("unsupported journal version " + version);
+            seed = in.readLong();
+            worldW = in.readInt();
+            worldH = in.readInt();
+        }
+
+        /** Advances to the next input event; false at the end marker or at a truncated tail. */
+        boolean next() throws IOException {
+            try {
+                tick += readVarLong(in);
+                int op = in.readUnsignedByte();
+                if (op == END) {
+                    endTick = tick;
+                    endHash = in.readLong();
+                    return false;
+                }
+                input = new Input(op, (int) unZigZag(readVarLong(in)), (int) unZigZag(readVarLong(in)));
+                return true;
+            } catch (EOFException ex) {
+                return false; // recorder died without finishing; replay what we have
+            }
+        }
+
+        @Override
+        public void close() throws IOException { in.close(); }
     }
 
-    Point2D dirAway(double x1, double y1, double x2, double y2) {
-        Point2D to = dirTo(x1, y1, x2, y2);
-        return new Point2D(-to.x, -to.y);
+    static long zigZag(long v) { return (v << 1) ^ (v >> 63); }
+
+    static long unZigZag(long v) { return (v >>> 1) ^ -(v & 1); }
+
+    static void writeVarLong(DataOutputStream out, long v) throws IOException {
+        while ((v & ~0x7FL) != 0) {
+            out.writeByte((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.writeByte((int) v);
     }
 
-    double lerp(double a, double b, double t) { return a + (b - a) * t; }
+    static long readVarLong(DataInputStream in) throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return v;
+        }
+        throw new IOException("malformed varint");
+    }
 }
 
 /* ===================== Entities & Types (Top-Level, Non-Public) ===================== */
@@ -756,18 +2501,42 @@ class AquariumPanel extends JPanel implements ActionListener, MouseListener, Mou
 enum FishType { MID, BOTTOM, ALGAE }
 enum SpeciesPattern { NONE, STRIPES, SPOTS }
 
+/**
+ * Look of a fish: colors (packed 0xRRGGBB so the engine stays free of AWT), pattern and tail shape.
+ * Species are a fixed catalog; fish share entries and {@link #id} indexes per-species render caches.
+ */
 class Species {
-    final Color baseColor;
-    final Color finTint;
-    final Color patternColor;
+    static final Species[] CATALOG = {
+        // MID
+        new Species(0, 0xFFB446, 0xFFE6A0, 0xB46E14, SpeciesPattern.STRIPES, false, true),
+        new Species(1, 0xDC5A5A, 0xFFBEBE, 0x8C1E1E, SpeciesPattern.SPOTS, true, false),
+        new Species(2, 0x78B4FF, 0xC8E6FF, 0x3C64B4, SpeciesPattern.STRIPES, true, true),
+        new Species(3, 0xF0DC78, 0xFFF0B4, 0xAA963C, SpeciesPattern.NONE, false, false),
+        // BOTTOM
+        new Species(4, 0xBEAA6E, 0xDCC896, 0x786446, SpeciesPattern.SPOTS, false, true),
+        new Species(5, 0xAA9664, 0xC8B48C, 0x786446, SpeciesPattern.NONE, false, false),
+        new Species(6, 0xA08C78, 0xD2BEAA, 0x64503C, SpeciesPattern.STRIPES, false, false),
+        // ALGAE
+        new Species(7, 0x64D278, 0xB4FFC8, 0x3C9646, SpeciesPattern.NONE, false, true),
+        new Species(8, 0x5AC8AA, 0xB4FAE6, 0x288C78, SpeciesPattern.STRIPES, true, false),
+        new Species(9, 0x78DC6E, 0xC8FFBE, 0x46A03C, SpeciesPattern.SPOTS, false, false),
+        // fallback
+        new Species(10, 0xC8C8C8, 0xDCDCDC, 0x969696, SpeciesPattern.NONE, false, false)
+    };
+
+    final int id;
+    final int baseRgb;
+    final int finRgb;
+    final int patternRgb;
     final SpeciesPattern pattern;
     final boolean tailLong;
     final boolean tailWide;
 
-    Species(Color baseColor, Color finTint, Color patternColor, SpeciesPattern pattern, boolean tailLong, boolean tailWide) {
-        this.baseColor = baseColor;
-        this.finTint = finTint;
-        this.patternColor = patternColor;
+    Species(int id, int baseRgb, int finRgb, int patternRgb, SpeciesPattern pattern, boolean tailLong, boolean tailWide) {
+        this.id = id;
+        this.baseRgb = baseRgb;
+        this.finRgb = finRgb;
+        this.patternRgb = patternRgb;
         this.pattern = pattern;
         this.tailLong = tailLong;
         this.tailWide = tailWide;
@@ -775,34 +2544,17 @@ class Species {
 
     static Species randomSpeciesFor(FishType type, Random rng) {
         switch (type) {
-            case MID:
-                switch (rng.nextInt(4)) {
-                    case 0: return new Species(new Color(255, 180, 70), new Color(255, 230, 160), new Color(180, 110, 20), SpeciesPattern.STRIPES, false, true);
-                    case 1: return new Species(new Color(220, 90, 90), new Color(255, 190, 190), new Color(140, 30, 30), SpeciesPattern.SPOTS, true, false);
-                    case 2: return new Species(new Color(120, 180, 255), new Color(200, 230, 255), new Color(60, 100, 180), SpeciesPattern.STRIPES, true, true);
-                    default: return new Species(new Color(240, 220, 120), new Color(255, 240, 180), new Color(170, 150, 60), SpeciesPattern.NONE, false, false);
-                }
-            case BOTTOM:
-                switch (rng.nextInt(3)) {
-                    case 0: return new Species(new Color(190, 170, 110), new Color(220, 200, 150), new Color(120, 100, 70), SpeciesPattern.SPOTS, false, true);
-                    case 1: return new Species(new Color(170, 150, 100), new Color(200, 180, 140), new Color(120, 100, 70), SpeciesPattern.NONE, false, false);
-                    default: return new Species(new Color(160, 140, 120), new Color(210, 190, 170), new Color(100, 80, 60), SpeciesPattern.STRIPES, false, false);
-                }
-            case ALGAE:
-                switch (rng.nextInt(3)) {
-                    case 0: return new Species(new Color(100, 210, 120), new Color(180, 255, 200), new Color(60, 150, 70), SpeciesPattern.NONE, false, true);
-                    case 1: return new Species(new Color(90, 200, 170), new Color(180, 250, 230), new Color(40, 140, 120), SpeciesPattern.STRIPES, true, false);
-                    default: return new Species(new Color(120, 220, 110), new Color(200, 255, 190), new Color(70, 160, 60), SpeciesPattern.SPOTS, false, false);
-                }
-            default:
-                return new Species(new Color(200, 200, 200), new Color(220, 220, 220), new Color(150, 150, 150), SpeciesPattern.NONE, false, false);
+            case MID: return CATALOG[rng.nextInt(4)];
+            case BOTTOM: return CATALOG[4 + rng.nextInt(3)];
+            case ALGAE: return CATALOG[7 + rng.nextInt(3)];
+            default: return CATALOG[10];
         }
     }
 }
 
 class Fish {
-    final FishType type;
-    final Species species;
+    FishType type;
+    Species species;
 
     // Kinematics
     double x, y;
@@ -822,23 +2574,43 @@ class Fish {
     double ageSeconds;
     double lifespanSeconds;
     double growthPerMeal;
-    double pendingMealGrowth = 0;
-    boolean alive = true;
-    boolean convertedToCorpse = false;
-    double scareTimer = 0;
+    double pendingMealGrowth;
+    boolean alive;
+    boolean convertedToCorpse;
+    double scareTimer;
+    boolean poopDue;          // set during the (possibly parallel) behavior phase, spawned after it
+    double poopX, poopY;
+
+    // Food target cache (see AquariumEngine#foodTarget)
+    int foodTarget;           // pellet slot being chased, or -1
+    double foodRecheck;       // seconds until the next full nearest-pellet search
 
     // Smooth idle gliding
     double preferredY;    // target depth
     double depthBand;     // slack band around preferred depth
-    double depthKp = 0.35, depthKd = 0.25;
-    double glideT = 0.0;
+    double depthKp, depthKd;
+    double glideT;
     double glideOmega;    // horizontal undulation frequency
     double glideAmpX;     // undulation amplitude
 
-    Fish(FishType type, double size, Rectangle tankBounds, Random rng) {
+    Fish(FishType type, double size, Tank tankBounds, Random rng) {
+        reset(type, size, tankBounds, rng);
+    }
+
+    /** Re-initializes every field as a newborn fish, so a dead instance can be recycled (see AquariumEngine#obtainFish). */
+    void reset(FishType type, double size, Tank tankBounds, Random rng) {
         this.type = type;
         this.species = Species.randomSpeciesFor(type, rng);
         this.size = size;
+        vx = vy = 0;
+        stomachTimer = ageSeconds = pendingMealGrowth = scareTimer = glideT = 0;
+        alive = true;
+        convertedToCorpse = poopDue = false;
+        poopX = poopY = 0;
+        foodTarget = -1;
+        foodRecheck = 0;
+        depthKp = 0.35;
+        depthKd = 0.25;
 
         double waterTopY = tankBounds.y + 50; // FEED_TOP_MARGIN (air band)
         double waterBotY = tankBounds.y + tankBounds.height - 10;
@@ -901,40 +2673,95 @@ class Fish {
     }
 }
 
-class Pellet {
-    double x, y;
-    double vy = 0;
-    double radius = 4;
-    boolean settled = false;
-    boolean eaten = false;
-    double age = 0;
+/**
+ * Structure-of-arrays storage for simple sinking particles (pellets, poop). Slot i of every column
+ * describes one particle; the step loops run straight down the arrays. Removal is two-phase: set
+ * {@code removed[i]} during the tick, then {@link #compact()} closes the gaps in one pass.
+ * Columns grow by doubling and never shrink, so a steady population allocates nothing.
+ */
+class ParticleStore {
+    int size = 0;
+    double[] x = new double[32], y = new double[32];
+    double[] vy = new double[32];
+    double[] radius = new double[32];
+    double[] age = new double[32];
+    boolean[] settled = new boolean[32];
+    boolean[] removed = new boolean[32];
+    int[] forward = new int[32];   // after compact(): old slot -> new slot, or -1 if it was dropped
+
+    /** Appends a fresh particle at rest and returns its slot. */
+    int add(double px, double py, double r) {
+        if (size == x.length) grow(size * 2);
+        int i = size++;
+        x[i] = px; y[i] = py; vy[i] = 0;
+        radius[i] = r;
+        age[i] = 0;
+        settled[i] = false;
+        removed[i] = false;
+        return i;
+    }
 
-    Pellet(double x, double y) { this.x = x; this.y = y; }
-}
+    /**
+     * Drops every removed slot, keeping survivors in order, and records where each slot went in
+     * {@link #forward} so ids held across the compaction can be fixed up. Returns how many were dropped.
+     */
+    int compact() {
+        int w = 0;
+        for (int r = 0; r < size; r++) {
+            if (removed[r]) {
+                forward[r] = -1;
+                continue;
+            }
+            if (w != r) move(r, w);
+            forward[r] = w++;
+        }
+        int dropped = size - w;
+        size = w;
+        return dropped;
+    }
 
-class Poop {
-    double x, y;
-    double vy = 0;
-    double radius = 3;
-    boolean settled = false;
-    double age = 0;
-    boolean toRemove = false;
+    void move(int from, int to) {
+        x[to] = x[from]; y[to] = y[from]; vy[to] = vy[from];
+        radius[to] = radius[from];
+        age[to] = age[from];
+        settled[to] = settled[from];
+        removed[to] = removed[from];
+    }
 
-    Poop(double x, double y) { this.x = x; this.y = y; }
+    void grow(int cap) {
+        x = Arrays.copyOf(x, cap); y = Arrays.copyOf(y, cap); vy = Arrays.copyOf(vy, cap);
+        radius = Arrays.copyOf(radius, cap);
+        age = Arrays.copyOf(age, cap);
+        settled = Arrays.copyOf(settled, cap);
+        removed = Arrays.copyOf(removed, cap);
+        forward = Arrays.copyOf(forward, cap);
+    }
 }
 
-class Corpse {
-    double x, y;
-    double vy = 0;
-    double radius;
-    boolean settled = false;
-    double age = 0;
-    double decay = 0;         // 0..1
-    double decayRate = 0.02;  // per second baseline (plus seaweed bites)
-    boolean consumed = false; // fully eaten by plants
+/** Fish corpses: sinking particles that also decompose (0..1) at a per-corpse baseline rate. */
+class CorpseStore extends ParticleStore {
+    double[] decay = new double[32];
+    double[] decayRate = new double[32];  // per second baseline (plus seaweed bites)
 
-    Corpse(double x, double y, double radius) {
-        this.x = x; this.y = y; this.radius = radius;
+    int add(double px, double py, double r, double rate) {
+        int i = add(px, py, r);
+        decay[i] = 0;
+        decayRate[i] = rate;
+        return i;
+    }
+
+    @Override
+    void move(int from, int to) {
+        super.move(from, to);
+        decay[to] = decay[from];
+        decayRate[to] = decayRate[from];
+    }
+
+    @Override
+    void grow(int cap) {
+        super.grow(cap);
+        decay = Arrays.copyOf(decay, cap);
+        decayRate = Arrays.copyOf(decayRate, cap);
     }
 }
 
@@ -945,15 +2772,908 @@ class Seaweed {
     double cleanRadius = 42;
     double eatRate = 1.0; // multiplier for corpse-eating
 
-    Seaweed(double x, double y, double h) {
+    Seaweed(double x, double y, double h, Random rng) {
         this.x = x; this.y = y; this.h = h;
-        this.phase = new Random().nextDouble() * Math.PI * 2;
+        this.phase = rng.nextDouble() * Math.PI * 2;
+    }
+}
+
+/**
+ * Scales the hand-tuned per-species {@link Fish} constants and sets the filter strength, so a sweep
+ * can vary them without touching the species tables. {@link #DEFAULT} reproduces the stock tank exactly.
+ */
+final class Tuning {
+    static final Tuning DEFAULT = new Tuning(1, 1, 1, 6.5);
+
+    final double hungerRate;     // multiplier on each species' hungerRate
+    final double eatThreshold;   // multiplier on each species' eatThreshold
+    final double growthPerMeal;  // multiplier on each species' growthPerMeal
+    final double cleanRate;      // filter: algae removed per second (dirt at 85% of it)
+
+    Tuning(double hungerRate, double eatThreshold, double growthPerMeal, double cleanRate) {
+        this.hungerRate = hungerRate;
+        this.eatThreshold = eatThreshold;
+        this.growthPerMeal = growthPerMeal;
+        this.cleanRate = cleanRate;
+    }
+
+    /** Applies the multipliers to a freshly reset fish. */
+    void applyTo(Fish f) {
+        f.hungerRate *= hungerRate;
+        f.eatThreshold *= eatThreshold;
+        f.growthPerMeal *= growthPerMeal;
+    }
+}
+
+/* ===================== Water Quality ===================== */
+
+/**
+ * Coarse dirt/algae concentration grid over the water column (air band to floor). A cell holds the level
+ * the whole tank would have if all of it were like that cell, so the mean over the cells is the old
+ * tank-wide 0..100 level, and the amounts passed in are in those tank-wide units too: a point source or
+ * sink ({@link #addDirt}) moves the whole amount through the one cell under it, which changes that cell by
+ * {@code amount * cells} and the mean by {@code amount}, while a tank-wide effect ({@link #addDirtEverywhere})
+ * moves the mean by its amount directly. The mean is capped at {@link #MAX}; single cells are not, and
+ * {@link #diffuse} spreads them out a little each tick. Every method is allocation-free.
+ */
+class WaterField {
+    static final double MAX = 100;
+
+    final int cols, rows, cells;
+    final double x0, y0, width, height, cellW, cellH;
+    double[] dirt, algae;
+    private double[] scratch;
+    private double dirtTotal, algaeTotal; // sums over the cells, kept current by every method here
+
+    WaterField(double x0, double y0, double width, double height, double cellSize) {
+        this.x0 = x0; this.y0 = y0; this.width = width; this.height = height;
+        this.cols = Math.max(1, (int) Math.round(width / cellSize));
+        this.rows = Math.max(1, (int) Math.round(height / cellSize));
+        this.cells = cols * rows;
+        this.cellW = width / cols;
+        this.cellH = height / rows;
+        dirt = new double[cells];
+        algae = new double[cells];
+        scratch = new double[cells];
+    }
+
+    /** Index of the cell containing (x, y); points outside are clamped to the nearest edge cell. */
+    int cell(double x, double y) {
+        int cx = Math.min(cols - 1, Math.max(0, (int) ((x - x0) / cellW)));
+        int cy = Math.min(rows - 1, Math.max(0, (int) ((y - y0) / cellH)));
+        return cy * cols + cx;
+    }
+
+    /** Puts {@code amount} of dirt (tank-wide units) into cell c; a sink takes at most what the cell holds. */
+    void addDirt(int c, double amount) { dirtTotal += addAt(dirt, c, amount * cells, dirtTotal); }
+
+    void addAlgae(int c, double amount) { algaeTotal += addAt(algae, c, amount * cells, algaeTotal); }
+
+    /** Moves the mean dirt by {@code amount}, within 0..MAX. */
+    void addDirtEverywhere(double amount) { dirtTotal = shift(dirt, amount, dirtTotal); }
+
+    void addAlgaeEverywhere(double amount) { algaeTotal = shift(algae, amount, algaeTotal); }
+
+    private double addAt(double[] f, int c, double delta, double total) {
+        delta = delta > 0 ? Math.min(delta, Math.max(0, MAX * cells - total)) : Math.max(delta, -f[c]);
+        f[c] += delta;
+        return delta;
+    }
+
+    /**
+     * A rise is spread evenly over the cells. A fall is taken from each cell in proportion to what it holds
+     * (the whole volume circulates through the filter), so the mean drops by the full amount even when
+     * the dirt sits in a few cells.
+     */
+    private double shift(double[] f, double amount, double total) {
+        double mean = total / cells, target = Math.min(MAX, Math.max(0, mean + amount));
+        if (target > mean) {
+            double rise = target - mean;
+            for (int c = 0; c < cells; c++) f[c] += rise;
+        } else if (target < mean) {
+            double keep = target / mean;
+            for (int c = 0; c < cells; c++) f[c] *= keep;
+        }
+        return target * cells;
+    }
+
+    /**
+     * One explicit 5-point diffusion step: each cell trades {@code rate} of its difference with every
+     * neighbor. Walls reflect (no flux), so it conserves the total; stable for rate <= 0.25.
+     */
+    void diffuse(double rate) {
+        dirt = diffuse(dirt, rate);
+        algae = diffuse(algae, rate);
+        recount(); // drops the rounding drift of the running totals
+    }
+
+    private double[] diffuse(double[] f, double rate) {
+        double[] out = scratch;
+        for (int y = 0; y < rows; y++) {
+            int row = y * cols;
+            for (int x = 0; x < cols; x++) {
+                int c = row + x;
+                double v = f[c];
+                double l = x > 0 ? f[c - 1] : v, r = x < cols - 1 ? f[c + 1] : v;
+                double u = y > 0 ? f[c - cols] : v, d = y < rows - 1 ? f[c + cols] : v;
+                out[c] = v + rate * (l + r + u + d - 4 * v);
+            }
+        }
+        scratch = f;
+        return out;
+    }
+
+    /** Re-sums the cells; call after writing {@link #dirt} or {@link #algae} directly. */
+    void recount() {
+        dirtTotal = sum(dirt);
+        algaeTotal = sum(algae);
+    }
+
+    double meanDirt() { return dirtTotal / cells; }
+
+    double meanAlgae() { return algaeTotal / cells; }
+
+    private static double sum(double[] f) {
+        double total = 0;
+        for (double v : f) total += v;
+        return total;
+    }
+
+    /**
+     * Checks the units against the old tank-wide scalar: a deposit anywhere raises the mean by exactly its
+     * amount, diffusion leaves the mean alone, a tank-wide change moves it by its amount, and the mean
+     * stops at MAX. Throws IllegalStateException naming the first step that is off.
+     */
+    static void checkUnits() {
+        WaterField w = new WaterField(0, 0, 38 * 24, 22 * 24, 24);
+        double level = 0; // the old scalar, updated as it was
+        for (int i = 0; i < 50; i++) {
+            w.addDirt(w.cell(i * 17.0, i * 9.0), 1.6);
+            level = Math.min(MAX, level + 1.6);
+            expect("deposit", w.meanDirt(), level);
+            w.diffuse(0.05);
+            expect("diffusion", w.meanDirt(), level);
+            w.addDirtEverywhere(-0.85);
+            level = Math.max(0, level - 0.85);
+            expect("filter", w.meanDirt(), level);
+        }
+        w.addDirt(0, 1000);
+        expect("cap", w.meanDirt(), MAX);
+        expect("sum", sum(w.dirt) / w.cells, MAX);
+    }
+
+    private static void expect(String step, double mean, double level) {
+        if (Math.abs(mean - level) > 1e-9 * Math.max(1, level)) {
+            throw new IllegalStateException("WaterField " + step + ": mean " + mean + ", old scalar " + level);
+        }
+    }
+}
+
+/* ===================== Spatial Index ===================== */
+
+/**
+ * Uniform grid over the tank for "what is near (x, y)?" queries.
+ * Entries are integer ids (list indices) bucketed with a counting sort, so a rebuild is O(n) and
+ * allocation-free once the arrays have grown to the working population. Within a cell, ids keep
+ * insertion order. Queries are read-only and may run from several threads once built.
+ */
+class SpatialGrid {
+    final double originX, originY, cellSize;
+    final int cols, rows;
+
+    private final int[] cellStart;      // bucket offsets into the sorted arrays (cols*rows + 1)
+    private int size = 0;
+    private int[] pendingIds = new int[64];
+    private int[] pendingCells = new int[64];
+    private double[] pendingX = new double[64], pendingY = new double[64];
+    private int[] ids = new int[64];
+    private double[] xs = new double[64], ys = new double[64];
+
+    SpatialGrid(Tank bounds, double cellSize) {
+        this.originX = bounds.x;
+        this.originY = bounds.y;
+        this.cellSize = cellSize;
+        this.cols = Math.max(1, (int) Math.ceil(bounds.width / cellSize));
+        this.rows = Math.max(1, (int) Math.ceil(bounds.height / cellSize));
+        this.cellStart = new int[cols * rows + 1];
+    }
+
+    void clear() { size = 0; }
+
+    void insert(int id, double x, double y) {
+        if (size == pendingIds.length) grow(size * 2);
+        pendingIds[size] = id;
+        pendingX[size] = x;
+        pendingY[size] = y;
+        pendingCells[size] = cellY(y) * cols + cellX(x);
+        size++;
+    }
+
+    /** Buckets everything inserted since {@link #clear()}; must be called before querying. */
+    void build() {
+        Arrays.fill(cellStart, 0);
+        for (int i = 0; i < size; i++) cellStart[pendingCells[i] + 1]++;
+        for (int c = 0; c < cols * rows; c++) cellStart[c + 1] += cellStart[c];
+        // scatter using cellStart as a write cursor, then shift it back into place
+        for (int i = 0; i < size; i++) {
+            int k = cellStart[pendingCells[i]]++;
+            ids[k] = pendingIds[i];
+            xs[k] = pendingX[i];
+            ys[k] = pendingY[i];
+        }
+        for (int c = cols * rows; c > 0; c--) cellStart[c] = cellStart[c - 1];
+        cellStart[0] = 0;
+    }
+
+    int size() { return size; }
+
+    int cellX(double x) { return clamp((int) Math.floor((x - originX) / cellSize), cols); }
+    int cellY(double y) { return clamp((int) Math.floor((y - originY) / cellSize), rows); }
+
+    int start(int cx, int cy) { return cellStart[cy * cols + cx]; }
+    int end(int cx, int cy) { return cellStart[cy * cols + cx + 1]; }
+
+    int id(int k) { return ids[k]; }
+    double x(int k) { return xs[k]; }
+    double y(int k) { return ys[k]; }
+
+    /**
+     * Id of the accepted entry closest to (x, y), or -1. Searches outward ring by ring and stops once
+     * no unvisited cell can hold anything closer. Ties go to the lower id, like a front-to-back scan.
+     */
+    int nearest(double x, double y, IntPredicate accept) {
+        int cx = cellX(x), cy = cellY(y);
+        int best = -1;
+        double bestD2 = Double.POSITIVE_INFINITY;
+        int maxRing = Math.max(cols, rows);
+        for (int ring = 0; ring <= maxRing; ring++) {
+            if (best >= 0) {
+                double gap = (ring - 1) * cellSize; // closest any ring cell can be
+                if (gap > 0 && gap * gap > bestD2) break;
+            }
+            int x0 = cx - ring, x1 = cx + ring, y0 = cy - ring, y1 = cy + ring;
+            for (int gy = Math.max(0, y0); gy <= Math.min(rows - 1, y1); gy++) {
+                boolean edgeRow = gy == y0 || gy == y1;
+                for (int gx = Math.max(0, x0); gx <= Math.min(cols - 1, x1); gx++) {
+                    if (!edgeRow && gx != x0 && gx != x1) continue; // interior already visited
+                    for (int k = start(gx, gy), end = end(gx, gy); k < end; k++) {
+                        double dx = xs[k] - x, dy = ys[k] - y;
+                        double d2 = dx * dx + dy * dy;
+                        if (d2 > bestD2 || (d2 == bestD2 && ids[k] > best)) continue;
+                        if (!accept.test(ids[k])) continue;
+                        bestD2 = d2;
+                        best = ids[k];
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    private static int clamp(int c, int n) { return c < 0 ? 0 : (c >= n ? n - 1 : c); }
+
+    private void grow(int cap) {
+        pendingIds = Arrays.copyOf(pendingIds, cap);
+        pendingCells = Arrays.copyOf(pendingCells, cap);
+        pendingX = Arrays.copyOf(pendingX, cap);
+        pendingY = Arrays.copyOf(pendingY, cap);
+        ids = Arrays.copyOf(ids, cap);
+        xs = Arrays.copyOf(xs, cap);
+        ys = Arrays.copyOf(ys, cap);
+    }
+}
+
+/**
+ * Sort-and-sweep broad phase over circles. Entries are sorted by their left edge (merge sort,
+ * O(n log n)) and swept once; every pair whose bounding boxes overlap on both axes and that passes
+ * the pair filter is reported. Results come back as per-id neighbor lists sorted by id, so callers
+ * can keep list-order semantics. All buffers are reused between sweeps.
+ */
+class SweepAndPrune {
+    interface PairFilter { boolean test(int idA, int idB); }
+
+    private final PairFilter filter;
+    private int size = 0;
+    private int maxId = -1;
+    private int[] ids = new int[64];
+    private double[] minX = new double[64], maxX = new double[64], minY = new double[64], maxY = new double[64];
+    private int[] order = new int[64], scratch = new int[64];
+
+    // candidate pairs (entry slots), then flattened into per-id neighbor lists
+    private int pairCount = 0;
+    private int[] pairA = new int[256], pairB = new int[256];
+    private int[] neighborStart = new int[65], cursor = new int[65];
+    private int[] neighbors = new int[512], unsorted = new int[512];
+
+    SweepAndPrune(PairFilter filter) { this.filter = filter; }
+
+    void clear() { size = 0; maxId = -1; pairCount = 0; }
+
+    /** Adds a circle; ids must be non-negative and unique per sweep. */
+    void insert(int id, double x, double y, double r) {
+        if (size == ids.length) grow(size * 2);
+        ids[size] = id;
+        minX[size] = x - r; maxX[size] = x + r;
+        minY[size] = y - r; maxY[size] = y + r;
+        size++;
+        if (id > maxId) maxId = id;
+    }
+
+    void sweep() {
+        for (int i = 0; i < size; i++) order[i] = i;
+        mergeSort(0, size);
+
+        pairCount = 0;
+        for (int a = 0; a < size; a++) {
+            int i = order[a];
+            double right = maxX[i];
+            for (int b = a + 1; b < size; b++) {
+                int j = order[b];
+                if (minX[j] > right) break; // nothing further along can overlap i on x
+                if (minY[j] > maxY[i] || minY[i] > maxY[j]) continue;
+                if (filter != null && !filter.test(ids[i], ids[j])) continue;
+                if (pairCount == pairA.length) {
+                    pairA = Arrays.copyOf(pairA, pairCount * 2);
+                    pairB = Arrays.copyOf(pairB, pairCount * 2);
+                }
+                pairA[pairCount] = ids[i];
+                pairB[pairCount] = ids[j];
+                pairCount++;
+            }
+        }
+        buildNeighborLists();
+    }
+
+    /** Candidate pairs reported by the last sweep. */
+    int pairCount() { return pairCount; }
+
+    int neighborStart(int id) { return id > maxId ? 0 : neighborStart[id]; }
+    int neighborEnd(int id) { return id > maxId ? 0 : neighborStart[id + 1]; }
+    int neighbor(int k) { return neighbors[k]; }
+
+    private void buildNeighborLists() {
+        int n = maxId + 1;
+        if (neighborStart.length < n + 1) {
+            neighborStart = new int[Math.max(n + 1, neighborStart.length * 2)];
+            cursor = new int[neighborStart.length];
+        }
+        if (neighbors.length < pairCount * 2) {
+            neighbors = new int[Math.max(pairCount * 2, neighbors.length * 2)];
+            unsorted = new int[neighbors.length];
+        }
+        Arrays.fill(neighborStart, 0, n + 1, 0);
+        for (int p = 0; p < pairCount; p++) {
+            neighborStart[pairA[p] + 1]++;
+            neighborStart[pairB[p] + 1]++;
+        }
+        for (int i = 0; i < n; i++) neighborStart[i + 1] += neighborStart[i];
+
+        // bucket in sweep order first...
+        System.arraycopy(neighborStart, 0, cursor, 0, n);
+        for (int p = 0; p < pairCount; p++) {
+            unsorted[cursor[pairA[p]]++] = pairB[p];
+            unsorted[cursor[pairB[p]]++] = pairA[p];
+        }
+        // ...then, since adjacency is symmetric, walking ids in ascending order and appending each id to
+        // its neighbors' lists leaves every list sorted (a one-pass radix sort)
+        System.arraycopy(neighborStart, 0, cursor, 0, n);
+        for (int v = 0; v < n; v++) {
+            for (int k = neighborStart[v]; k < neighborStart[v + 1]; k++) {
+                int u = unsorted[k];
+                neighbors[cursor[u]++] = v;
+            }
+        }
+    }
+
+    private void mergeSort(int lo, int hi) {
+        if (hi - lo < 2) return;
+        int mid = (lo + hi) >>> 1;
+        mergeSort(lo, mid);
+        mergeSort(mid, hi);
+        if (minX[order[mid - 1]] <= minX[order[mid]]) return; // already in order
+        System.arraycopy(order, lo, scratch, lo, hi - lo);
+        int a = lo, b = mid, k = lo;
+        while (a < mid && b < hi) order[k++] = (minX[scratch[b]] < minX[scratch[a]]) ? scratch[b++] : scratch[a++];
+        while (a < mid) order[k++] = scratch[a++];
+        while (b < hi) order[k++] = scratch[b++];
+    }
+
+    private void grow(int cap) {
+        ids = Arrays.copyOf(ids, cap);
+        minX = Arrays.copyOf(minX, cap);
+        maxX = Arrays.copyOf(maxX, cap);
+        minY = Arrays.copyOf(minY, cap);
+        maxY = Arrays.copyOf(maxY, cap);
+        order = Arrays.copyOf(order, cap);
+        scratch = Arrays.copyOf(scratch, cap);
+    }
+}
+
+/* ===================== Checkpoints ===================== */
+
+/**
+ * {@link Random} with the same generator (so the same sequences for the same seed) whose 48-bit state
+ * can be read and restored, which {@code java.util.Random} keeps private. Not thread-safe; the
+ * engine only draws from it on the stepping thread. {@link #nextGaussian} is refused: {@code Random}
+ * caches its second Gaussian outside that state, so a restore could not reproduce it.
+ */
+@SuppressWarnings("serial") // never serialized; checkpoints save state() instead
+class SimRandom extends Random {
+    private static final long MULTIPLIER = 0x5DEECE66DL, ADDEND = 0xBL, MASK = (1L << 48) - 1;
+    private long state;
+
+    SimRandom(long seed) { super(seed); }
+
+    @Override
+    public synchronized void setSeed(long seed) {
+        super.setSeed(seed);
+        state = (seed ^ MULTIPLIER) & MASK;
+    }
+
+    @Override
+    protected int next(int bits) {
+        state = (state * MULTIPLIER + ADDEND) & MASK;
+        return (int) (state >>> (48 - bits));
+    }
+
+    @Override
+    public synchronized double nextGaussian() {
+        throw new UnsupportedOperationException("nextGaussian keeps state a checkpoint can't restore");
+    }
+
+    long state() { return state; }
+
+    void restoreState(long state) { this.state = state & MASK; }
+}
+
+/**
+ * Whole-world save/restore. Layout (big-endian):
+ * <pre>
+ *   int magic 'AQCK', int version, int worldW, int worldH, long seed,
+ *   double hungerRate, eatThreshold, growthPerMeal, cleanRate (tuning), long rngState,
+ *   long tick, double timeSeconds, byte filterOn, double cursorX, double cursorY,
+ *   water     : int cols, int rows, double[cells] dirt, double[cells] algae
+ *   seaweeds  : int n, n * 6 doubles
+ *   fish      : int n, n * (byte type, int species, 26 doubles, 3 flag bytes, int foodTarget, double foodRecheck)
+ *   pellets, poops, corpses : int n, columns x, y, vy, radius, age (double[n]), settled, removed (byte[n]);
+ *                             corpses add decay, decayRate
+ *   int crc32 of everything before it
+ * </pre>
+ * Written through one heap buffer and a {@link FileChannel}, read back through a memory map, so
+ * restoring even a large tank is a handful of bulk copies. Other versions are rejected, not migrated.
+ */
+class Checkpoint {
+    static final int MAGIC = 0x4151434B; // "AQCK"
+    static final int VERSION = 3;         // 2: tuning after the seed; 3: fish food target cache
+
+    private ByteBuffer buf = ByteBuffer.allocate(1 << 16);
+
+    /** Saves {@code e} to {@code file}, replacing it atomically. Call on the thread that steps {@code e}. */
+    static void save(AquariumEngine e, Path file) throws IOException {
+        Checkpoint c = new Checkpoint();
+        c.putInt(MAGIC);
+        c.putInt(VERSION);
+        c.writeEngine(e);
+        CRC32 crc = new CRC32();
+        crc.update(c.buf.array(), 0, c.buf.position());
+        c.putInt((int) crc.getValue());
+        c.buf.flip();
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (c.buf.hasRemaining()) ch.write(c.buf);
+            ch.force(false);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** A new engine in exactly the saved state; stepping it continues the saved run bit for bit. */
+    static AquariumEngine restore(Path file) throws IOException {
+        ByteBuffer in;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            in = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+        if (in.limit() < 12 || in.getInt(0) != MAGIC) throw new IOException(file + " is not an aquarium checkpoint");
+        int version = in.getInt(4);
+        if (version != VERSION) throw new IOException(file + ": unsupported checkpoint version " + version);
+        CRC32 crc = new CRC32();
+        crc.update(in.duplicate().limit(in.limit() - 4));
+        if ((int) crc.getValue() != in.getInt(in.limit() - 4)) throw new IOException(file + " is corrupt (checksum mismatch)");
+        in.position(8);
+        try {
+            return readEngine(in);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException ex) {
+            throw new IOException(file + " is corrupt: " + ex);
+        }
+    }
+
+    private void writeEngine(AquariumEngine e) {
+        putInt(e.worldW);
+        putInt(e.worldH);
+        putLong(e.seed);
+        putDouble(e.tuning.hungerRate);
+        putDouble(e.tuning.eatThreshold);
+        putDouble(e.tuning.growthPerMeal);
+        putDouble(e.tuning.cleanRate);
+        putLong(e.rng.state());
+        putLong(e.tick);
+        putDouble(e.timeSeconds);
+        putBoolean(e.filterOn);
+        putDouble(e.cursorX);
+        putDouble(e.cursorY);
+
+        WaterField wf = e.water;
+        putInt(wf.cols);
+        putInt(wf.rows);
+        putDoubles(wf.dirt, wf.dirt.length);
+        putDoubles(wf.algae, wf.algae.length);
+
+        putInt(e.seaweeds.size());
+        for (Seaweed s : e.seaweeds) {
+            putDouble(s.x); putDouble(s.y); putDouble(s.h); putDouble(s.phase);
+            putDouble(s.cleanRadius); putDouble(s.eatRate);
+        }
+
+        putInt(e.fish.size());
+        for (Fish f : e.fish) writeFish(f);
+
+        writeStore(e.pellets);
+        writeStore(e.poops);
+        writeStore(e.corpses);
+        putDoubles(e.corpses.decay, e.corpses.size);
+        putDoubles(e.corpses.decayRate, e.corpses.size);
+    }
+
+    private static AquariumEngine readEngine(ByteBuffer in) throws IOException {
+        int worldW = in.getInt(), worldH = in.getInt();
+        long seed = in.getLong();
+        Tuning tuning = new Tuning(in.getDouble(), in.getDouble(), in.getDouble(), in.getDouble());
+        AquariumEngine e = new AquariumEngine(worldW, worldH, seed, tuning);
+        long rngState = in.getLong(); // restored last: rebuilding entities below draws from the RNG
+        e.tick = in.getLong();
+        e.timeSeconds = in.getDouble();
+        e.filterOn = in.get() != 0;
+        e.cursorX = in.getDouble();
+        e.cursorY = in.getDouble();
+
+        WaterField wf = e.water;
+        if (in.getInt() != wf.cols || in.getInt() != wf.rows) throw new IOException("water field size mismatch");
+        getDoubles(in, wf.dirt, wf.dirt.length);
+        getDoubles(in, wf.algae, wf.algae.length);
+        wf.recount();
+        e.dirt = wf.meanDirt();
+        e.algaeLevel = wf.meanAlgae();
+
+        e.seaweeds.clear();
+        for (int i = 0, n = in.getInt(); i < n; i++) {
+            Seaweed s = new Seaweed(in.getDouble(), in.getDouble(), in.getDouble(), e.rng);
+            s.phase = in.getDouble();
+            s.cleanRadius = in.getDouble();
+            s.eatRate = in.getDouble();
+            e.seaweeds.add(s);
+        }
+
+        e.fish.clear();
+        for (int i = 0, n = in.getInt(); i < n; i++) {
+            FishType type = FishType.values()[in.get()];
+            Fish f = new Fish(type, 1, e.tankBounds, e.rng);
+            readFish(in, f);
+            e.fish.add(f);
+        }
+
+        readStore(in, e.pellets);
+        e.pelletsKnown = e.pellets.size; // saved between steps, i.e. right after a compaction
+        for (Fish f : e.fish) {
+            if (f.foodTarget < -1 || f.foodTarget >= e.pellets.size) throw new IOException("fish food target out of range");
+        }
+        readStore(in, e.poops);
+        readStore(in, e.corpses);
+        getDoubles(in, e.corpses.decay, e.corpses.size);
+        getDoubles(in, e.corpses.decayRate, e.corpses.size);
+
+        e.rng.restoreState(rngState);
+        return e;
+    }
+
+    private void writeFish(Fish f) {
+        putByte(f.type.ordinal());
+        putInt(f.species.id);
+        putDouble(f.x); putDouble(f.y); putDouble(f.vx); putDouble(f.vy); putDouble(f.wanderVX);
+        putDouble(f.size); putDouble(f.maxSize); putDouble(f.speed);
+        putDouble(f.hunger); putDouble(f.hungerRate); putDouble(f.eatThreshold); putDouble(f.stomachTimer);
+        putDouble(f.ageSeconds); putDouble(f.lifespanSeconds); putDouble(f.growthPerMeal);
+        putDouble(f.pendingMealGrowth); putDouble(f.scareTimer); putDouble(f.poopX); putDouble(f.poopY);
+        putDouble(f.preferredY); putDouble(f.depthBand); putDouble(f.depthKp); putDouble(f.depthKd);
+        putDouble(f.glideT); putDouble(f.glideOmega); putDouble(f.glideAmpX);
+        putBoolean(f.alive); putBoolean(f.convertedToCorpse); putBoolean(f.poopDue);
+        putInt(f.foodTarget); putDouble(f.foodRecheck);
+    }
+
+    /** Reads everything after the type byte, in {@link #writeFish} order. */
+    private static void readFish(ByteBuffer in, Fish f) {
+        f.species = Species.CATALOG[in.getInt()];
+        f.x = in.getDouble(); f.y = in.getDouble(); f.vx = in.getDouble(); f.vy = in.getDouble(); f.wanderVX = in.getDouble();
+        f.size = in.getDouble(); f.maxSize = in.getDouble(); f.speed = in.getDouble();
+        f.hunger = in.getDouble(); f.hungerRate = in.getDouble(); f.eatThreshold = in.getDouble(); f.stomachTimer = in.getDouble();
+        f.ageSeconds = in.getDouble(); f.lifespanSeconds = in.getDouble(); f.growthPerMeal = in.getDouble();
+        f.pendingMealGrowth = in.getDouble(); f.scareTimer = in.getDouble(); f.poopX = in.getDouble(); f.poopY = in.getDouble();
+        f.preferredY = in.getDouble(); f.depthBand = in.getDouble(); f.depthKp = in.getDouble(); f.depthKd = in.getDouble();
+        f.glideT = in.getDouble(); f.glideOmega = in.getDouble(); f.glideAmpX = in.getDouble();
+        f.alive = in.get() != 0; f.convertedToCorpse = in.get() != 0; f.poopDue = in.get() != 0;
+        f.foodTarget = in.getInt(); f.foodRecheck = in.getDouble();
+    }
+
+    private void writeStore(ParticleStore s) {
+        int n = s.size;
+        putInt(n);
+        putDoubles(s.x, n); putDoubles(s.y, n); putDoubles(s.vy, n); putDoubles(s.radius, n); putDoubles(s.age, n);
+        putBooleans(s.settled, n);
+        putBooleans(s.removed, n);
+    }
+
+    private static void readStore(ByteBuffer in, ParticleStore s) {
+        int n = in.getInt();
+        if (n > s.x.length) s.grow(n);
+        getDoubles(in, s.x, n); getDoubles(in, s.y, n); getDoubles(in, s.vy, n); getDoubles(in, s.radius, n); getDoubles(in, s.age, n);
+        for (int i = 0; i < n; i++) s.settled[i] = in.get() != 0;
+        for (int i = 0; i < n; i++) s.removed[i] = in.get() != 0;
+        s.size = n;
+    }
+
+    private static void getDoubles(ByteBuffer in, double[] dst, int n) {
+        in.asDoubleBuffer().get(dst, 0, n);
+        in.position(in.position() + n * Double.BYTES);
+    }
+
+    private void putDoubles(double[] src, int n) {
+        ensure(n * Double.BYTES);
+        buf.asDoubleBuffer().put(src, 0, n);
+        buf.position(buf.position() + n * Double.BYTES);
+    }
+
+    private void putBooleans(boolean[] src, int n) {
+        ensure(n);
+        for (int i = 0; i < n; i++) buf.put(src[i] ? (byte) 1 : 0);
+    }
+
+    private void putInt(int v) { ensure(Integer.BYTES); buf.putInt(v); }
+    private void putLong(long v) { ensure(Long.BYTES); buf.putLong(v); }
+    private void putDouble(double v) { ensure(Double.BYTES); buf.putDouble(v); }
+    private void putByte(int v) { ensure(1); buf.put((byte) v); }
+    private void putBoolean(boolean v) { putByte(v ? 1 : 0); }
+
+    private void ensure(int bytes) {
+        if (buf.remaining() >= bytes) return;
+        ByteBuffer bigger = ByteBuffer.allocate(Math.max(buf.capacity() * 2, buf.position() + bytes));
+        buf.flip();
+        bigger.put(buf);
+        buf = bigger;
+    }
+}
+
+/* ===================== Parameter Sweep ===================== */
+
+/**
+ * Headless batch runner over a grid of {@link Tuning}s. Every grid point runs once per seed on its own
+ * single-threaded engine; runs are spread over a fixed pool (one per core by default) and each finished
+ * run is appended to the CSV as one flushed row. Rerunning with the same arguments and {@code --out}
+ * skips the rows already in the file, so an interrupted sweep resumes where it stopped.
+ *
+ * Flags: --out FILE (required), --hunger-rate, --eat-threshold, --growth (multipliers, comma lists),
+ * --clean-rate (filter strength), --seeds N starting at --seed, --seconds S per run, --fish N extra
+ * fish, --feed-every S (one pellet, placed by a per-seed RNG so every grid point is fed alike),
+ * --sample S (population curve resolution), --threads T.
+ *
+ * final_dirt and final_algae are the tank means at the end of the run ({@link AquariumEngine#dirt},
+ * {@link AquariumEngine#algaeLevel}), on the 0..100 scale the HUD shows; see {@link WaterField} for the units.
+ */
+final class ParameterSweep {
+    static final String HEADER = "run,seed,hunger_rate,eat_threshold,growth_per_meal,clean_rate,fish,feed_every_s,seconds,"
+            + "survival_s,final_fish,peak_fish,final_dirt,final_algae,population";
+    static final int KEY_COLUMNS = 9; // the run's inputs; a row is "done" when a line starts with them
+
+    /** One grid point and seed. */
+    static final class Run {
+        final int index;
+        final long seed;
+        final Tuning tuning;
+        final String key;
+
+        Run(int index, long seed, Tuning tuning, String key) {
+            this.index = index;
+            this.seed = seed;
+            this.tuning = tuning;
+            this.key = key;
+        }
+    }
+
+    private final int extraFish;
+    private final double feedEvery, sampleEvery;
+    private final long seconds;
+
+    private ParameterSweep(int extraFish, double feedEvery, long seconds, double sampleEvery) {
+        this.extraFish = extraFish;
+        this.feedEvery = feedEvery;
+        this.seconds = seconds;
+        this.sampleEvery = sampleEvery;
+    }
+
+    /** Runs the sweep described by {@code args}; false if the output can't be used or any run failed. */
+    static boolean run(String[] args) {
+        String out = AquariumSim.argString(args, "--out", null);
+        if (out == null) {
+            System.err.println("sweep: --out FILE.csv is required");
+            return false;
+        }
+        double[] hunger = AquariumSim.argDoubles(args, "--hunger-rate", 0.5, 1, 2);
+        double[] threshold = AquariumSim.argDoubles(args, "--eat-threshold", 0.8, 1, 1.2);
+        double[] growth = AquariumSim.argDoubles(args, "--growth", 0.5, 1, 2);
+        double[] clean = AquariumSim.argDoubles(args, "--clean-rate", 3, Tuning.DEFAULT.cleanRate, 10);
+        long firstSeed = AquariumSim.argLong(args, "--seed", 1);
+        int seeds = (int) AquariumSim.argLong(args, "--seeds", 10);
+        int threads = (int) AquariumSim.argLong(args, "--threads", Runtime.getRuntime().availableProcessors());
+        ParameterSweep sweep = new ParameterSweep((int) AquariumSim.argLong(args, "--fish", 12),
+                AquariumSim.argDoubles(args, "--feed-every", 10)[0], AquariumSim.argLong(args, "--seconds", 600),
+                AquariumSim.argDoubles(args, "--sample", 30)[0]);
+
+        List<Run> grid = new ArrayList<>();
+        for (double h : hunger) for (double t : threshold) for (double g : growth) for (double c : clean) {
+            for (int i = 0; i < seeds; i++) {
+                long seed = firstSeed + i;
+                String key = grid.size() + "," + seed + "," + h + "," + t + "," + g + "," + c + ","
+                        + sweep.extraFish + "," + sweep.feedEvery + "," + sweep.seconds;
+                grid.add(new Run(grid.size(), seed, new Tuning(h, t, g, c), key));
+            }
+        }
+
+        Path file = Path.of(out);
+        List<Run> pending = new ArrayList<>();
+        try {
+            Set<String> done = completedKeys(file);
+            Set<String> keys = new HashSet<>();
+            for (Run r : grid) keys.add(r.key);
+            if (!keys.containsAll(done)) {
+                System.err.println("sweep: " + file + " holds rows from a different sweep; use another --out");
+                return false;
+            }
+            for (Run r : grid) if (!done.contains(r.key)) pending.add(r);
+            System.err.printf("sweep: %d runs, %d already in %s, %d to go on %d threads%n",
+                    grid.size(), grid.size() - pending.size(), file, pending.size(), threads);
+        } catch (IOException ex) {
+            System.err.println("sweep: " + ex.getMessage());
+            return false;
+        }
+
+        AtomicInteger finished = new AtomicInteger(), failed = new AtomicInteger();
+        long t0 = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        try (BufferedWriter w = Files.newBufferedWriter(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            if (Files.size(file) == 0) {
+                w.write(HEADER);
+                w.newLine();
+                w.flush();
+            }
+            int reportEvery = Math.max(1, pending.size() / 20);
+            for (Run r : pending) {
+                pool.execute(() -> {
+                    String row;
+                    try {
+                        row = sweep.simulate(r);
+                    } catch (RuntimeException ex) {
+                        failed.incrementAndGet();
+                        System.err.println("sweep: run " + r.index + " failed: " + ex);
+                        return;
+                    }
+                    try {
+                        synchronized (w) {
+                            w.write(row);
+                            w.newLine();
+                            w.flush();
+                        }
+                    } catch (IOException ex) {
+                        failed.incrementAndGet();
+                        System.err.println("sweep: writing run " + r.index + ": " + ex);
+                        return;
+                    }
+                    int n = finished.incrementAndGet();
+                    if (n % reportEvery == 0 || n == pending.size()) {
+                        double sec = (System.nanoTime() - t0) / 1e9;
+                        System.err.printf("sweep: %d/%d done, %.0fs elapsed, ~%.0fs left%n",
+                                n, pending.size(), sec, sec / n * (pending.size() - n));
+                    }
+                });
+            }
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        } catch (IOException ex) {
+            System.err.println("sweep: " + ex);
+            return false;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            pool.shutdownNow();
+        }
+        return failed.get() == 0;
+    }
+
+    /**
+     * The key columns of every complete row in {@code file}; a torn last line (crash mid-write) is cut off,
+     * but only once the header shows the file is a sweep CSV, so any other file is refused untouched.
+     */
+    static Set<String> completedKeys(Path file) throws IOException {
+        Set<String> done = new HashSet<>();
+        if (!Files.exists(file)) return done;
+        byte[] bytes = Files.readAllBytes(file);
+        int headerEnd = 0;
+        while (headerEnd < bytes.length && bytes[headerEnd] != '\n') headerEnd++;
+        String header = new String(bytes, 0, headerEnd, StandardCharsets.UTF_8).trim();
+        boolean headerTorn = headerEnd == bytes.length; // crashed before the header's newline
+        if (headerTorn ? !HEADER.startsWith(header) : !header.equals(HEADER)) {
+            throw new IOException(file + " is not a sweep CSV (header differs)");
+        }
+        int end = bytes.length;
+        while (end > 0 && bytes[end - 1] != '\n') end--;
+        if (end < bytes.length) {
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                ch.truncate(end);
+            }
+        }
+        if (end == 0) return done;
+        String[] lines = new String(bytes, 0, end, StandardCharsets.UTF_8).split("\n");
+        for (int i = 1; i < lines.length; i++) {
+            String line = lines[i].trim();
+            if (line.isEmpty()) continue;
+            int cut = 0;
+            for (int c = 0; c < KEY_COLUMNS && cut >= 0; c++) cut = line.indexOf(',', cut + (c > 0 ? 1 : 0));
+            done.add(cut < 0 ? line : line.substring(0, cut));
+        }
+        return done;
+    }
+
+    /** Runs one tank to the end and formats its CSV row. */
+    String simulate(Run r) {
+        AquariumEngine e = new AquariumEngine(960, 620, r.seed, r.tuning);
+        FishType[] types = FishType.values();
+        for (int i = 0; i < extraFish; i++) e.addFish(types[i % types.length]);
+        Random feeder = new Random(r.seed ^ 0x5DEECE66DL);
+        Tank tank = e.tankBounds;
+
+        long ticks = Math.round(seconds / AquariumEngine.FIXED_DT);
+        long feedTicks = feedEvery > 0 ? Math.max(1, Math.round(feedEvery / AquariumEngine.FIXED_DT)) : 0;
+        long sampleTicks = Math.max(1, Math.round(sampleEvery / AquariumEngine.FIXED_DT));
+        StringBuilder curve = new StringBuilder().append(e.fish.size());
+        int peak = e.fish.size();
+        double survival = -1;
+        for (long t = 1; t <= ticks; t++) {
+            if (feedTicks > 0 && t % feedTicks == 0) e.dropPelletAt(tank.x + feeder.nextDouble() * tank.width);
+            e.step();
+            int n = e.fish.size(); // dead fish leave the list in the step they die
+            peak = Math.max(peak, n);
+            if (survival < 0 && n == 0) survival = e.timeSeconds;
+            if (t % sampleTicks == 0) curve.append(';').append(n);
+        }
+        if (survival < 0) survival = e.timeSeconds;
+        return String.format(Locale.ROOT, "%s,%.2f,%d,%d,%.2f,%.2f,%s",
+                r.key, survival, e.fish.size(), peak, e.dirt, e.algaeLevel, curve);
     }
 }
 
-/* ===================== Small Geometry Helper ===================== */
+/* ===================== Small Geometry Helpers ===================== */
+
+/** Tank rectangle in world pixels (an AWT-free stand-in for {@link Rectangle}). */
+class Tank {
+    final int x, y, width, height;
+
+    Tank(int x, int y, int width, int height) {
+        this.x = x; this.y = y; this.width = width; this.height = height;
+    }
+
+    /** Same half-open test as {@link Rectangle#contains(int, int)}. */
+    boolean contains(double px, double py) {
+        return px >= x && py >= y && px < x + width && py < y + height;
+    }
 
-class Point2D {
-    final double x, y;
-    Point2D(double x, double y) { this.x = x; this.y = y; }
+    double getCenterX() { return x + width / 2.0; }
 }
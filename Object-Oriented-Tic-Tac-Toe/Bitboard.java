@@ -0,0 +1,52 @@
+/**
+ * Tic-tac-toe positions as two 9-bit masks, one per mark (bit i = square i). Win checks are a few
+ * AND/compare operations against precomputed line masks, and the empty squares are one expression,
+ * so a search can iterate moves with {@code Integer.numberOfTrailingZeros} and {@code free & (free - 1)}
+ * without allocating anything.
+ */
+public final class Bitboard {
+    public static final int FULL = 0x1FF;
+
+    /** The eight winning lines. */
+    public static final int[] LINES = {
+            0b000_000_111, 0b000_111_000, 0b111_000_000,   // rows
+            0b001_001_001, 0b010_010_010, 0b100_100_100,   // columns
+            0b100_010_001, 0b001_010_100                    // diagonals
+    };
+
+    /** For each square, the lines through it (2 to 4 of them). */
+    private static final int[][] LINES_THROUGH = new int[9][];
+    static {
+        for (int sq = 0; sq < 9; sq++) {
+            int n = 0;
+            for (int line : LINES) if ((line & (1 << sq)) != 0) n++;
+            LINES_THROUGH[sq] = new int[n];
+            n = 0;
+            for (int line : LINES) if ((line & (1 << sq)) != 0) LINES_THROUGH[sq][n++] = line;
+        }
+    }
+
+    private Bitboard() { }
+
+    /** True if {@code marks} contains a complete line. */
+    public static boolean hasLine(int marks) {
+        for (int line : LINES) if ((marks & line) == line) return true;
+        return false;
+    }
+
+    /** True if {@code marks}, which just gained square {@code sq}, has a line through it (cheaper than {@link #hasLine}). */
+    public static boolean completesLine(int marks, int sq) {
+        for (int line : LINES_THROUGH[sq]) if ((marks & line) == line) return true;
+        return false;
+    }
+
+    /** Squares neither side has played. */
+    public static int free(int x, int o) { return ~(x | o) & FULL; }
+
+    /** Bit mask of the squares holding {@code mark} on a {@code Mark[9]} board. */
+    public static int of(TicTacToeGame.Mark[] board, TicTacToeGame.Mark mark) {
+        int bits = 0;
+        for (int i = 0; i < 9; i++) if (board[i] == mark) bits |= 1 << i;
+        return bits;
+    }
+}
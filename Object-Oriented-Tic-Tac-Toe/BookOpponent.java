@@ -0,0 +1,25 @@
+/**
+ * Opponent that plays from an {@link OpeningBook}: one read of the memory-mapped table per move, no search.
+ * A position the book has no answer for (one that can't come from a real game) goes to the fallback.
+ */
+public class BookOpponent implements Opponent {
+    private final OpeningBook book;
+    private final Opponent fallback;
+
+    public BookOpponent(OpeningBook book) { this(book, new MinimaxOpponent()); }
+
+    public BookOpponent(OpeningBook book, Opponent fallback) {
+        this.book = book;
+        this.fallback = fallback;
+    }
+
+    @Override
+    public int chooseMove(TicTacToeGame game, TicTacToeGame.Mark me) {
+        int x = game.getBits(TicTacToeGame.Mark.X), o = game.getBits(TicTacToeGame.Mark.O);
+        int entry = book.entry(x, o);
+        // the book's side to move is implied by the stone counts; it must be us
+        boolean xToMove = Integer.bitCount(x) == Integer.bitCount(o);
+        if (entry == 0 || xToMove != (me == TicTacToeGame.Mark.X)) return fallback.chooseMove(game, me);
+        return OpeningBook.move(entry);
+    }
+}
@@ -0,0 +1,269 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serves a {@link SessionManager} over a line protocol on a local TCP port. One connection can run any
+ * number of games. Squares are 1..9, as in {@link CLIUI}.
+ * <pre>
+ *   NEW [X|O]        start a game, the server playing O (or the mark given)  OK &lt;id&gt; &lt;server move|-&gt; &lt;status&gt;
+ *   MOVE &lt;id&gt; &lt;sq&gt;   play sq; the server answers in the same reply             OK &lt;id&gt; &lt;server move|-&gt; &lt;status&gt;
+ *   MOVES &lt;id&gt;       the legal squares                                       MOVES &lt;id&gt; &lt;sq&gt;...
+ *   BOARD &lt;id&gt;       the board, squares 1..9 as X, O or .                    BOARD &lt;id&gt; &lt;cells&gt;
+ *   END &lt;id&gt;         abandon a game                                          ENDED &lt;id&gt;
+ *   STATS            games in progress and server-side latency               STATS games=&lt;n&gt; &lt;histogram&gt;
+ *   anything wrong                                                           ERR &lt;reason&gt;
+ * </pre>
+ * Status is PLAYING, X_WINS, O_WINS or DRAW. A finished game is gone after that reply. Games still going
+ * when their connection closes are ended once every request read from it has been answered.
+ *
+ * Requests may be pipelined. Each connection has a reader thread and a writer thread, with the replies'
+ * futures queued between them. The work runs in parallel on the manager's pool, and replies are still
+ * written in request order. The queue is bounded by {@link #PIPELINE}, so a client that keeps at most
+ * that many requests in flight never stalls the reader.
+ */
+public class GameServer implements AutoCloseable {
+    static final int PIPELINE = 1 << 14;
+    static final String USAGE = "java GameServer [--port N] [--threads N] [--book]";
+
+    private final SessionManager sessions;
+    private final ServerSocket socket;
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    /** Listens on the loopback interface; port 0 picks a free one (see {@link #port()}). */
+    public GameServer(SessionManager sessions, int port) throws IOException {
+        this.sessions = sessions;
+        this.socket = new ServerSocket(port, 128, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::acceptLoop, "game-server-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int port() { return socket.getLocalPort(); }
+
+    /** Time from reading each request to writing its reply. */
+    public LatencyHistogram latency() { return latency; }
+
+    @Override
+    public void close() throws IOException { socket.close(); }
+
+    private void acceptLoop() {
+        while (!socket.isClosed()) {
+            try {
+                Socket s = socket.accept();
+                s.setTcpNoDelay(true);
+                new Connection(s).start();
+            } catch (IOException e) {
+                if (!socket.isClosed()) System.err.println("GameServer: accept failed: " + e);
+            }
+        }
+    }
+
+    /** A reply not yet written, with the time its request was read. */
+    private record Pending(long readAt, CompletableFuture<String> reply) { }
+
+    private static final Pending END_OF_INPUT = new Pending(0, null);
+
+    private final class Connection {
+        private final Socket socket;
+        private final BlockingQueue<Pending> replies = new ArrayBlockingQueue<>(PIPELINE);
+        private final Set<Long> games = ConcurrentHashMap.newKeySet(); // started here and not yet over
+
+        Connection(Socket socket) { this.socket = socket; }
+
+        void start() {
+            String name = "game-conn-" + socket.getPort();
+            Thread reader = new Thread(this::readLoop, name + "-in"), writer = new Thread(this::writeLoop, name + "-out");
+            reader.setDaemon(true);
+            writer.setDaemon(true);
+            reader.start();
+            writer.start();
+        }
+
+        private void readLoop() {
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII))) {
+                for (String line; (line = in.readLine()) != null; ) {
+                    if (line.isBlank()) continue;
+                    replies.put(new Pending(System.nanoTime(), handle(line.trim(), games)));
+                }
+            } catch (IOException e) {
+                // the client went away; the writer finishes what it has
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                try { replies.put(END_OF_INPUT); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+            }
+        }
+
+        private void writeLoop() {
+            boolean drained = false;
+            try (Socket s = socket;
+                 BufferedWriter out = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.US_ASCII))) {
+                for (Pending p; (p = replies.take()) != END_OF_INPUT; ) {
+                    out.write(p.reply.join());
+                    out.newLine();
+                    latency.record(System.nanoTime() - p.readAt);
+                    if (replies.isEmpty()) out.flush(); // batch replies that are already waiting into one write
+                }
+                drained = true;
+            } catch (IOException e) {
+                // the client went away; closing the socket stops the reader too
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            try {
+                // wait out the requests still queued, so every NEW among them has registered its game
+                if (!drained) for (Pending p; (p = replies.take()) != END_OF_INPUT; ) p.reply.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            for (long id : games) sessions.end(id);
+        }
+    }
+
+    /**
+     * The reply to one request line; completes with "ERR ..." rather than exceptionally. {@code games} holds
+     * the ids of the connection's games in progress, kept up to date as replies complete.
+     */
+    CompletableFuture<String> handle(String line, Set<Long> games) {
+        String[] w = line.split("\\s+");
+        try {
+            CompletableFuture<String> reply = switch (w[0].toUpperCase(Locale.ROOT)) {
+                case "NEW" -> sessions.create(w.length > 1 ? mark(w[1]) : TicTacToeGame.Mark.O).thenApply(r -> ok(r, games));
+                case "MOVE" -> sessions.move(id(w), square(w)).thenApply(r -> ok(r, games));
+                case "MOVES" -> sessions.legalMoves(id(w)).thenApply(moves -> {
+                    StringBuilder sb = new StringBuilder("MOVES ").append(w[1]);
+                    for (int sq : moves) sb.append(' ').append(sq + 1);
+                    return sb.toString();
+                });
+                case "BOARD" -> sessions.board(id(w)).thenApply(board -> {
+                    StringBuilder sb = new StringBuilder("BOARD ").append(w[1]).append(' ');
+                    for (TicTacToeGame.Mark m : board) sb.append(m == TicTacToeGame.Mark.X ? 'X' : m == TicTacToeGame.Mark.O ? 'O' : '.');
+                    return sb.toString();
+                });
+                case "END" -> {
+                    long id = id(w);
+                    yield sessions.end(id).thenApply(ended -> {
+                        games.remove(id);
+                        return ended ? "ENDED " + w[1] : "ERR no game " + w[1];
+                    });
+                }
+                case "STATS" -> CompletableFuture.completedFuture("STATS games=" + sessions.size() + " " + latency.summary());
+                default -> CompletableFuture.completedFuture("ERR unknown command " + w[0]);
+            };
+            return reply.exceptionally(GameServer::error);
+        } catch (RuntimeException e) {
+            return CompletableFuture.completedFuture(error(e));
+        }
+    }
+
+    private static String ok(SessionManager.Reply r, Set<Long> games) {
+        if (r.status().equals("PLAYING")) games.add(r.id()); else games.remove(r.id());
+        return "OK " + r.id() + " " + (r.aiMove() < 0 ? "-" : String.valueOf(r.aiMove() + 1)) + " " + r.status();
+    }
+
+    private static String error(Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        return cause instanceof IllegalArgumentException || cause instanceof IndexOutOfBoundsException
+                ? "ERR " + cause.getMessage() : "ERR internal: " + cause;
+    }
+
+    private static long id(String[] w) {
+        if (w.length < 2) throw new IllegalArgumentException("missing game id");
+        try {
+            return Long.parseLong(w[1]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("bad game id " + w[1]);
+        }
+    }
+
+    private static int square(String[] w) {
+        if (w.length < 3) throw new IllegalArgumentException("missing square");
+        try {
+            int sq = Integer.parseInt(w[2]) - 1;
+            if (sq >= 0 && sq <= 8) return sq;
+        } catch (NumberFormatException ignored) {}
+        throw new IllegalArgumentException("square must be 1..9: " + w[2]);
+    }
+
+    private static TicTacToeGame.Mark mark(String s) {
+        return switch (s.toUpperCase(Locale.ROOT)) {
+            case "X" -> TicTacToeGame.Mark.X;
+            case "O" -> TicTacToeGame.Mark.O;
+            default -> throw new IllegalArgumentException("the server plays X or O, not " + s);
+        };
+    }
+
+    /**
+     * {@code java GameServer [--port N] [--threads N] [--book]}: serves until killed. The opponent is
+     * {@link MinimaxOpponent}, or {@link BookOpponent} on tictactoe.book with --book.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port, threads;
+        try {
+            port = (int) argLong(args, "--port", 7878);
+            threads = (int) argLong(args, "--threads", Runtime.getRuntime().availableProcessors());
+        } catch (IllegalArgumentException e) {
+            exitWithUsage(e, USAGE);
+            return;
+        }
+        Opponent opponent = opponent(args);
+        SessionManager sessions = new SessionManager(opponent, threads);
+        GameServer server = new GameServer(sessions, port);
+        System.out.println("Serving tic-tac-toe on 127.0.0.1:" + server.port() + " (" + threads + " threads, "
+                + opponent.getClass().getSimpleName() + ")");
+        while (true) {
+            Thread.sleep(10_000);
+            System.out.println("games=" + sessions.size() + " " + server.latency().summary());
+        }
+    }
+
+    static Opponent opponent(String[] args) throws IOException {
+        if (!argsContain(args, "--book")) return new MinimaxOpponent();
+        Path file = Path.of("tictactoe.book");
+        if (!Files.exists(file)) OpeningBook.generate(file);
+        return new BookOpponent(OpeningBook.open(file));
+    }
+
+    static boolean argsContain(String[] args, String flag) {
+        for (String a : args) if (flag.equalsIgnoreCase(a)) return true;
+        return false;
+    }
+
+    /** The number after {@code flag}, or {@code fallback} without one; IllegalArgumentException if it isn't a whole number. */
+    static long argLong(String[] args, String flag, long fallback) {
+        for (int i = 0; i + 1 < args.length; i++) {
+            if (!flag.equalsIgnoreCase(args[i])) continue;
+            try {
+                return Long.parseLong(args[i + 1]);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(flag + " takes a whole number, not " + args[i + 1]);
+            }
+        }
+        return fallback;
+    }
+
+    /** For a main whose arguments were rejected: prints why and how to call it, then exits with status 2. */
+    static void exitWithUsage(IllegalArgumentException e, String usage) {
+        System.err.println(e.getMessage());
+        System.err.println("usage: " + usage);
+        System.exit(2);
+    }
+}
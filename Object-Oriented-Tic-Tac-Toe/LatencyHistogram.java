@@ -0,0 +1,70 @@
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts of latencies in nanoseconds, in log-linear buckets: 16 per power of two, so any value is placed
+ * within about 6% and the whole range of a long fits in under a thousand counters. Recording is one
+ * atomic increment and safe from any number of threads; reading while others record gives a close,
+ * not exact, picture.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BITS = 4, SUB = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts.incrementAndGet(bucket(nanos));
+        max.accumulateAndGet(nanos, Math::max);
+    }
+
+    /** Adds everything recorded in {@code other}. */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long c = other.counts.get(i);
+            if (c != 0) counts.addAndGet(i, c);
+        }
+        max.accumulateAndGet(other.max(), Math::max);
+    }
+
+    public long count() {
+        long n = 0;
+        for (int i = 0; i < BUCKETS; i++) n += counts.get(i);
+        return n;
+    }
+
+    public long max() { return max.get(); }
+
+    /** The latency at quantile {@code q} (0..1): the upper edge of the bucket holding it, or 0 if empty. */
+    public long quantile(double q) {
+        long total = count();
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(q * total)), seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return Math.min(upperEdge(i), max());
+        }
+        return max();
+    }
+
+    /** One line: count, then p50/p90/p99/p99.9/max in microseconds. */
+    public String summary() {
+        return String.format(Locale.ROOT, "n=%d p50=%.1fus p90=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus",
+                count(), quantile(0.5) / 1e3, quantile(0.9) / 1e3, quantile(0.99) / 1e3, quantile(0.999) / 1e3, max() / 1e3);
+    }
+
+    private static int bucket(long v) {
+        if (v < SUB) return (int) v;
+        int e = 63 - Long.numberOfLeadingZeros(v);           // v lies in [2^e, 2^(e+1))
+        return (e - SUB_BITS + 1) * SUB + (int) (v >>> (e - SUB_BITS)) - SUB;
+    }
+
+    private static long upperEdge(int i) {
+        if (i < SUB) return i;
+        int e = i / SUB + SUB_BITS - 1, sub = i % SUB;
+        return ((long) (SUB + sub + 1) << (e - SUB_BITS)) - 1;
+    }
+}
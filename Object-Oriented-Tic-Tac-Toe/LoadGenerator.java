@@ -0,0 +1,180 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ * Drives a {@link GameServer} with many games at once, to see what a machine can host. Each connection
+ * keeps its share of the games going, one request in flight per game. It plays random legal moves, and
+ * starts a fresh game whenever one finishes, until time is up. At the end it reports request latency as the
+ * client saw it (the server's own view comes from STATS).
+ *
+ * {@code java LoadGenerator [--port N] [--games 100000] [--connections 16] [--seconds 30] [--seed 1]}
+ * Without --port it starts a server in this JVM, taking {@code --threads N} and {@code --book} like
+ * {@link GameServer}, and also reports the server's latency and the most games it held at once.
+ */
+public class LoadGenerator {
+    static final String USAGE = "java LoadGenerator [--port N] [--games 100000] [--connections 16] [--seconds 30] [--seed 1]"
+            + " [--threads N] [--book]";
+
+    /** One connection's games; runs on its own thread. */
+    private static final class Client implements Runnable {
+        private final int port, games;
+        private final long deadline;
+        private final SplittableRandom rng;
+        private final LatencyHistogram latency;
+
+        // requests awaiting replies, oldest first (replies come back in request order); at most one per game
+        private final Game[] waiting;
+        private final long[] sentAt;
+        private int head, inFlight;
+
+        long requests, finished, errors;
+        IOException failure;
+
+        private static final class Game {
+            long id;
+            int mine, theirs;
+        }
+
+        Client(int port, int games, long deadline, long seed, LatencyHistogram latency) {
+            this.port = port;
+            this.games = games;
+            this.deadline = deadline;
+            this.rng = new SplittableRandom(seed);
+            this.latency = latency;
+            waiting = new Game[games];
+            sentAt = new long[games];
+        }
+
+        @Override
+        public void run() {
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+                 BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+                 BufferedWriter out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII))) {
+                socket.setTcpNoDelay(true);
+                for (int i = 0; i < games; i++) startGame(out);
+                out.flush();
+
+                while (inFlight > 0) {
+                    String line = in.readLine();
+                    if (line == null) throw new EOFException("server closed the connection");
+                    long now = System.nanoTime();
+                    Game g = waiting[head];
+                    latency.record(now - sentAt[head]);
+                    head = (head + 1) % waiting.length;
+                    inFlight--;
+                    requests++;
+
+                    String[] w = line.split(" ");
+                    if (!w[0].equals("OK")) {
+                        errors++;
+                        if (now < deadline) startGame(out);
+                    } else {
+                        g.id = Long.parseLong(w[1]);
+                        if (!w[2].equals("-")) g.theirs |= 1 << (Integer.parseInt(w[2]) - 1);
+                        if (!w[3].equals("PLAYING")) {
+                            finished++;
+                            if (now < deadline) startGame(out);
+                        } else {
+                            int free = Bitboard.free(g.mine, g.theirs);
+                            for (int skip = rng.nextInt(Integer.bitCount(free)); skip > 0; skip--) free &= free - 1;
+                            int sq = Integer.numberOfTrailingZeros(free);
+                            g.mine |= 1 << sq;
+                            send(out, "MOVE " + g.id + " " + (sq + 1), g);
+                        }
+                    }
+                    if (!in.ready()) out.flush(); // answer everything already received in one write
+                }
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+
+        private void startGame(BufferedWriter out) throws IOException {
+            // half the games the server moves first
+            send(out, rng.nextBoolean() ? "NEW O" : "NEW X", new Game());
+        }
+
+        private void send(BufferedWriter out, String request, Game g) throws IOException {
+            int slot = (head + inFlight) % waiting.length;
+            waiting[slot] = g;
+            sentAt[slot] = System.nanoTime();
+            inFlight++;
+            out.write(request);
+            out.newLine();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int games, connections, port, serverThreads;
+        long seconds, seed;
+        try {
+            games = (int) GameServer.argLong(args, "--games", 100_000);
+            connections = (int) GameServer.argLong(args, "--connections", 16);
+            seconds = GameServer.argLong(args, "--seconds", 30);
+            seed = GameServer.argLong(args, "--seed", 1);
+            port = (int) GameServer.argLong(args, "--port", -1);
+            serverThreads = (int) GameServer.argLong(args, "--threads", Runtime.getRuntime().availableProcessors());
+        } catch (IllegalArgumentException e) {
+            GameServer.exitWithUsage(e, USAGE);
+            return;
+        }
+        connections = Math.max(connections, (games + GameServer.PIPELINE - 1) / GameServer.PIPELINE);
+
+        SessionManager sessions = null;
+        GameServer server = null;
+        if (port < 0) {
+            sessions = new SessionManager(GameServer.opponent(args), serverThreads);
+            server = new GameServer(sessions, 0);
+            port = server.port();
+            System.out.println("In-process server on port " + port + " with " + serverThreads + " threads");
+        }
+
+        LatencyHistogram latency = new LatencyHistogram();
+        long start = System.nanoTime(), deadline = start + seconds * 1_000_000_000L;
+        SplittableRandom seeds = new SplittableRandom(seed);
+        Client[] clients = new Client[connections];
+        Thread[] threads = new Thread[connections];
+        for (int c = 0; c < connections; c++) {
+            int share = games / connections + (c < games % connections ? 1 : 0);
+            clients[c] = new Client(port, share, deadline, seeds.nextLong(), latency);
+            threads[c] = new Thread(clients[c], "load-" + c);
+            threads[c].start();
+        }
+        System.out.println(games + " games over " + connections + " connections for " + seconds + " s");
+
+        int peak = 0;
+        for (Thread t : threads) {
+            while (t.isAlive()) {
+                t.join(1000);
+                if (sessions != null) peak = Math.max(peak, sessions.size());
+            }
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        long requests = 0, finished = 0, errors = 0;
+        for (Client c : clients) {
+            requests += c.requests;
+            finished += c.finished;
+            errors += c.errors;
+            if (c.failure != null) System.err.println("connection failed: " + c.failure);
+        }
+        System.out.printf(Locale.ROOT, "%d requests in %.1f s (%.0f/s), %d games finished (%.0f/s), %d errors%n",
+                requests, elapsed, requests / elapsed, finished, finished / elapsed, errors);
+        System.out.println("client latency: " + latency.summary());
+        if (server != null) {
+            System.out.println("server latency: " + server.latency().summary());
+            System.out.println("most games in progress at once: " + peak);
+            server.close();
+            sessions.close();
+        }
+    }
+}
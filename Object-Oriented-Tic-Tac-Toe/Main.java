@@ -1,3 +1,7 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
 public class Main {
     public static void main(String[] args) {
         // Config (you can change these or make them flags)
@@ -5,9 +9,11 @@ public class Main {
         boolean useCLI   = argsContain(args, "--cli") || !useSwing;
         boolean vsAI     = argsContain(args, "--ai");          // human vs AI if present
         boolean aiFirst  = argsContain(args, "--ai-first");     // AI plays X if present
+        boolean mnk      = argsContain(args, "--mnk");          // iterative-deepening m,n,k engine instead of full minimax
+        boolean book     = argsContain(args, "--book");         // answer from tictactoe.book (built on first use)
 
         TicTacToeGame game = new TicTacToeGame();
-        Opponent ai = new MinimaxOpponent();
+        Opponent ai = mnk ? new MnkOpponent() : book ? bookOpponent(Path.of("tictactoe.book")) : new MinimaxOpponent();
         TicTacToeGame.Mark aiAs = aiFirst ? TicTacToeGame.Mark.X : TicTacToeGame.Mark.O;
 
         if (useSwing) {
@@ -19,6 +25,16 @@ public class Main {
         }
     }
 
+    private static Opponent bookOpponent(Path file) {
+        try {
+            if (!Files.exists(file)) OpeningBook.generate(file);
+            return new BookOpponent(OpeningBook.open(file));
+        } catch (IOException e) {
+            System.err.println("Opening book unavailable (" + e.getMessage() + "); searching instead.");
+            return new MinimaxOpponent();
+        }
+    }
+
     private static boolean argsContain(String[] args, String flag) {
         if (args == null) return false;
         for (String a : args) if (flag.equalsIgnoreCase(a)) return true;
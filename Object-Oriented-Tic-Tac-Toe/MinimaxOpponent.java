@@ -1,121 +1,120 @@
-import java.util.List;
-
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Perfect-play opponent: negamax with alpha-beta over {@link Bitboard} masks passed by value (nothing
+ * is allocated per node), backed by a transposition table that outlives each call, so positions
+ * reached by different move orders, and whole repeated requests, are answered from the table.
+ */
 public class MinimaxOpponent implements Opponent {
-    @Override
-    public int chooseMove(TicTacToeGame game, TicTacToeGame.Mark me) {
-        TicTacToeGame.Mark opp = (me == TicTacToeGame.Mark.X ? TicTacToeGame.Mark.O : TicTacToeGame.Mark.X);
-
-        // Try center/corners quickly when available to speed up
-        var moves = game.legalMoves();
-        if (moves.contains(4)) return 4;
-        int[] corners = {0,2,6,8};
-        for (int c : corners) if (moves.contains(c)) return bestByMinimax(game, me, opp);
-        // Fall back to full minimax search
-        return bestByMinimax(game, me, opp);
+    private static final int WIN = 10;   // plus the empty squares left, so quicker wins score higher
+    private static final int INF = 1000;
+
+    // Zobrist keys: one per (mark, square), plus one toggled for the side to move
+    private static final long[][] KEYS = new long[2][9];
+    private static final long O_TO_MOVE;
+    static {
+        SplittableRandom r = new SplittableRandom(0x7A0B1257L);
+        for (long[] side : KEYS) for (int i = 0; i < 9; i++) side[i] = r.nextLong();
+        O_TO_MOVE = r.nextLong();
     }
 
-    private int bestByMinimax(TicTacToeGame game, TicTacToeGame.Mark me, TicTacToeGame.Mark opp) {
-        int bestScore = Integer.MIN_VALUE;
-        int bestMove = -1;
+    private final TranspositionTable table;
+    private final LongAdder nodes = new LongAdder();   // added to once per search, not per node
 
-        for (int move : game.legalMoves()) {
-            // simulate
-            Sim s = new Sim(game);
-            s.play(move);
-            int score = minimax(s, false, me, opp, Integer.MIN_VALUE, Integer.MAX_VALUE);
-            if (score > bestScore) { bestScore = score; bestMove = move; }
-        }
-        return bestMove;
-    }
+    public MinimaxOpponent() { this(new TranspositionTable(14)); }
 
-    private int minimax(Sim s, boolean maximizing, TicTacToeGame.Mark me, TicTacToeGame.Mark opp, int alpha, int beta) {
-        if (s.isOver()) {
-            var w = s.winner();
-            if (w == me) return +10;
-            if (w == opp) return -10;
-            return 0;
-        }
+    /** Shares {@code table} (e.g. between several opponents); it is safe to use from many threads. */
+    public MinimaxOpponent(TranspositionTable table) { this.table = table; }
 
-        if (maximizing) {
-            int best = Integer.MIN_VALUE;
-            for (int m : s.legalMoves()) {
-                Sim nxt = s.copy(); nxt.play(m);
-                int val = minimax(nxt, false, me, opp, alpha, beta);
-                best = Math.max(best, val);
-                alpha = Math.max(alpha, val);
-                if (beta <= alpha) break;
-            }
-            return best;
-        } else {
-            int best = Integer.MAX_VALUE;
-            for (int m : s.legalMoves()) {
-                Sim nxt = s.copy(); nxt.play(m);
-                int val = minimax(nxt, true, me, opp, alpha, beta);
-                best = Math.min(best, val);
-                beta = Math.min(beta, val);
-                if (beta <= alpha) break;
-            }
-            return best;
+    @Override
+    public int chooseMove(TicTacToeGame game, TicTacToeGame.Mark me) {
+        int mine = game.getBits(me), theirs = game.getBits(me == TicTacToeGame.Mark.X ? TicTacToeGame.Mark.O : TicTacToeGame.Mark.X);
+        // The center is a best move while at most one stone is down; later only the search can tell
+        if (Integer.bitCount(mine | theirs) <= 1 && ((mine | theirs) & (1 << 4)) == 0) return 4;
+
+        int side = me.ordinal();
+        long hash = hash(mine, theirs, side);
+        long hit = table.probe(hash);
+        if (hit != 0 && TranspositionTable.bound(hit) == TranspositionTable.EXACT
+                && TranspositionTable.move(hit) != TranspositionTable.NO_MOVE) {
+            return TranspositionTable.move(hit);
         }
+        return bestMove(mine, theirs, side, hash);
     }
 
-    /** Lightweight immutable-ish simulator for search */
-    private static class Sim {
-        private final TicTacToeGame.Mark[] b = new TicTacToeGame.Mark[9];
-        private TicTacToeGame.Mark turn;
-        private boolean over = false;
-        private TicTacToeGame.Mark win = TicTacToeGame.Mark.EMPTY;
-
-        Sim(TicTacToeGame g) {
-            var src = g.getBoard();
-            System.arraycopy(src, 0, b, 0, 9);
-            turn = g.getCurrent();
-            over = g.isGameOver();
-            win  = g.getWinner();
-        }
+    @Override
+    public long nodesSearched() { return nodes.sum(); }
+
+    /** Zobrist hash of a position where {@code mine} (side {@code side}: 0 = X, 1 = O) is to move. */
+    static long hash(int mine, int theirs, int side) {
+        long h = side == 1 ? O_TO_MOVE : 0;
+        for (int b = mine; b != 0; b &= b - 1) h ^= KEYS[side][Integer.numberOfTrailingZeros(b)];
+        for (int b = theirs; b != 0; b &= b - 1) h ^= KEYS[side ^ 1][Integer.numberOfTrailingZeros(b)];
+        return h;
+    }
 
-        Sim(TicTacToeGame.Mark[] b, TicTacToeGame.Mark turn, boolean over, TicTacToeGame.Mark win) {
-            System.arraycopy(b, 0, this.b, 0, 9);
-            this.turn = turn; this.over = over; this.win = win;
+    /** Full-window search at the root; the result is exact and stored for the next request. */
+    private int bestMove(int mine, int theirs, int side, long hash) {
+        int alpha = -INF, bestMove = -1;
+        long[] searched = new long[1];
+        for (int free = Bitboard.free(mine, theirs); free != 0; free &= free - 1) {
+            int sq = Integer.numberOfTrailingZeros(free);
+            int score = score(mine, theirs, side, hash, sq, -INF, -alpha, searched);
+            if (score > alpha) { alpha = score; bestMove = sq; }
         }
+        nodes.add(searched[0]);
+        table.store(hash, alpha, TranspositionTable.EXACT, bestMove, Integer.bitCount(Bitboard.free(mine, theirs)));
+        return bestMove;
+    }
 
-        Sim copy() { return new Sim(b, turn, over, win); }
-
-        boolean isOver() { return over; }
-        TicTacToeGame.Mark winner() { return win; }
+    /**
+     * Score for the mover of playing {@code sq}; the reply is searched with the window (alpha, beta) seen from
+     * the opponent. Positions searched are counted in {@code searched[0]}, which belongs to this one search.
+     */
+    private int score(int mine, int theirs, int side, long hash, int sq, int alpha, int beta, long[] searched) {
+        int after = mine | (1 << sq);
+        int empties = Integer.bitCount(Bitboard.free(after, theirs));
+        if (Bitboard.completesLine(after, sq)) return WIN + empties;
+        if (empties == 0) return 0;
+        return -negamax(theirs, after, side ^ 1, hash ^ KEYS[side][sq] ^ O_TO_MOVE, alpha, beta, searched);
+    }
 
-        List<Integer> legalMoves() {
-            java.util.ArrayList<Integer> ms = new java.util.ArrayList<>();
-            if (over) return ms;
-            for (int i = 0; i < 9; i++) if (b[i] == TicTacToeGame.Mark.EMPTY) ms.add(i);
-            return ms;
+    /** Score of the position for the side to move ({@code mine}; positive = winning), within the (alpha, beta) window. */
+    private int negamax(int mine, int theirs, int side, long hash, int alpha, int beta, long[] searched) {
+        searched[0]++;
+        int alpha0 = alpha;
+        int ttMove = TranspositionTable.NO_MOVE;
+        long hit = table.probe(hash);
+        if (hit != 0) {
+            int score = TranspositionTable.score(hit);
+            switch (TranspositionTable.bound(hit)) {
+                case TranspositionTable.EXACT -> { return score; }
+                case TranspositionTable.LOWER -> alpha = Math.max(alpha, score);
+                case TranspositionTable.UPPER -> beta = Math.min(beta, score);
+                default -> { }
+            }
+            if (alpha >= beta) return score;
+            ttMove = TranspositionTable.move(hit);
         }
 
-        boolean play(int idx) {
-            if (over || idx < 0 || idx > 8 || b[idx] != TicTacToeGame.Mark.EMPTY) return false;
-            b[idx] = turn;
-            // check winner
-            int[][] L = {
-                    {0,1,2},{3,4,5},{6,7,8},
-                    {0,3,6},{1,4,7},{2,5,8},
-                    {0,4,8},{2,4,6}
-            };
-            for (int[] line : L) {
-TicTacToeGame.Mark a = b[line[0]];
-TicTacToeGame.Mark c = b[line[1]];
-TicTacToeGame.Mark d = b[line[2]];
-
-                if (a != TicTacToeGame.Mark.EMPTY && a == c && c == d) {
-                    win = a; over = true; return true;
-                }
-            }
-            boolean full = true; for (var m : b) if (m == TicTacToeGame.Mark.EMPTY) { full = false; break; }
-            if (full) { over = true; win = TicTacToeGame.Mark.EMPTY; return true; }
-            turn = (turn == TicTacToeGame.Mark.X ? TicTacToeGame.Mark.O : TicTacToeGame.Mark.X);
-            return true;
+        int free = Bitboard.free(mine, theirs);
+        int best = -INF, bestMove = TranspositionTable.NO_MOVE;
+        if (ttMove != TranspositionTable.NO_MOVE) { // table move first
+            best = score(mine, theirs, side, hash, ttMove, -beta, -alpha, searched);
+            bestMove = ttMove;
+            if (best > alpha) alpha = best;
+            free &= ~(1 << ttMove);
+        }
+        for (; free != 0 && alpha < beta; free &= free - 1) {
+            int sq = Integer.numberOfTrailingZeros(free);
+            int score = score(mine, theirs, side, hash, sq, -beta, -alpha, searched);
+            if (score > best) { best = score; bestMove = sq; }
+            if (best > alpha) alpha = best;
         }
 
-        TicTacToeGame.Mark turn() { return turn; }
+        int bound = best <= alpha0 ? TranspositionTable.UPPER : best >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+        table.store(hash, best, bound, bestMove, Integer.bitCount(Bitboard.free(mine, theirs)));
+        return best;
     }
 }
-
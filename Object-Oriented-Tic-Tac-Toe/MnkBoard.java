@@ -0,0 +1,214 @@
+import java.util.SplittableRandom;
+
+/**
+ * An m,n,k game position: {@code k} in a row on an {@code m}-wide, {@code n}-high board wins
+ * (3,3,3 is tic-tac-toe, 15,15,5 is gomoku). Squares are numbered row by row like {@link TicTacToeGame}.
+ *
+ * Built for search: {@link #play} / {@link #undo} update everything incrementally and allocate nothing.
+ * That covers the Zobrist hash, the evaluation and the candidate-move neighbourhood. The evaluation is
+ * a threat count over every k-long window of squares. A window holding only one side's stones is worth
+ * more the more stones it holds. A window holding both sides' stones is dead. A window reaching k
+ * stones is the win.
+ */
+public final class MnkBoard {
+    public static final int X = 0, O = 1;
+    static final int NEAR = 2;           // candidate moves are empty squares within this distance of a stone
+
+    public final int m, n, k, size;
+    private final byte[] cells;          // 0 empty, 1 X, 2 O
+    private final int[] moves;
+    private int moveCount;
+    private int toMove = X;
+    private int winner = -1;
+    private long hash;
+    private final long[][] keys;
+    private final long oToMove;
+
+    // Threat windows
+    private final int[][] windowsOf;     // square -> ids of the windows through it
+    private final int[] countX, countO;  // stones per window
+    private final int[] weight;          // value of a live window by stone count (weight[k] only used by threat())
+    private int eval;                    // sum of live windows, positive favours X
+    private final int[] near;            // stones within NEAR of each square
+
+    public MnkBoard(int m, int n, int k) {
+        if (m < 1 || n < 1 || k < 1 || k > Math.max(m, n)) throw new IllegalArgumentException("bad m,n,k: " + m + "," + n + "," + k);
+        this.m = m;
+        this.n = n;
+        this.k = k;
+        this.size = m * n;
+        cells = new byte[size];
+        moves = new int[size];
+        near = new int[size];
+
+        SplittableRandom r = new SplittableRandom(((long) m << 32) ^ ((long) n << 16) ^ k ^ 0x6D6E6BL);
+        keys = new long[2][size];
+        for (long[] side : keys) for (int i = 0; i < size; i++) side[i] = r.nextLong();
+        oToMove = r.nextLong();
+
+        weight = new int[k + 1];
+        for (int c = 1; c <= k; c++) weight[c] = c == 1 ? 1 : Math.min(weight[c - 1] * 8, 1 << 20);
+
+        // every k-long run in the 4 directions, and for each square the runs through it
+        int[][] dirs = { {1, 0}, {0, 1}, {1, 1}, {1, -1} };
+        int[] perSquare = new int[size];
+        int[][] of = null;
+        int windows = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            int id = 0;
+            for (int[] d : dirs) {
+                for (int y = 0; y < n; y++) {
+                    for (int x = 0; x < m; x++) {
+                        int ex = x + d[0] * (k - 1), ey = y + d[1] * (k - 1);
+                        if (ex < 0 || ex >= m || ey < 0 || ey >= n) continue;
+                        for (int i = 0; i < k; i++) {
+                            int sq = (y + d[1] * i) * m + x + d[0] * i;
+                            if (pass == 0) perSquare[sq]++;
+                            else of[sq][--perSquare[sq]] = id;
+                        }
+                        id++;
+                    }
+                }
+            }
+            if (pass == 0) {
+                windows = id;
+                of = new int[size][];
+                for (int sq = 0; sq < size; sq++) of[sq] = new int[perSquare[sq]];
+            }
+        }
+        windowsOf = of;
+        countX = new int[windows];
+        countO = new int[windows];
+    }
+
+    /** The position of a 3x3 {@link TicTacToeGame}. */
+    public static MnkBoard of(TicTacToeGame game) {
+        MnkBoard b = new MnkBoard(3, 3, 3);
+        b.setTo(game);
+        return b;
+    }
+
+    /** Takes this 3x3 board to {@code game}'s position in place, allocating nothing. */
+    public void setTo(TicTacToeGame game) {
+        if (size != 9 || k != 3) throw new IllegalArgumentException("not a 3x3 board with k 3");
+        while (moveCount > 0) undo();
+        int xs = game.getBits(TicTacToeGame.Mark.X), os = game.getBits(TicTacToeGame.Mark.O);
+        // only the counts matter, so replay the stones alternately
+        while (xs != 0 || os != 0) {
+            int bits = toMove == X ? xs : os;
+            if (bits == 0) throw new IllegalArgumentException("stone counts can't come from alternating play");
+            int sq = Integer.numberOfTrailingZeros(bits);
+            if (toMove == X) xs &= xs - 1; else os &= os - 1;
+            play(sq);
+        }
+    }
+
+    /** An independent board in the same position (same hash), e.g. one per search thread. */
+    public MnkBoard copy() {
+        MnkBoard b = new MnkBoard(m, n, k);
+        b.setTo(this);
+        return b;
+    }
+
+    /** Takes this board to {@code other}'s position (same m, n and k) in place, allocating nothing. */
+    public void setTo(MnkBoard other) {
+        if (other.m != m || other.n != n || other.k != k) throw new IllegalArgumentException("boards differ in m, n or k");
+        int same = 0; // keep the moves both games share
+        while (same < moveCount && same < other.moveCount && moves[same] == other.moves[same]) same++;
+        while (moveCount > same) undo();
+        while (moveCount < other.moveCount) play(other.moves[moveCount]);
+    }
+
+    public int toMove() { return toMove; }
+    public int moveCount() { return moveCount; }
+    public long hash() { return hash; }
+    public boolean isEmpty(int sq) { return cells[sq] == 0; }
+    /** {@link #X}, {@link #O}, or -1 for an empty square. */
+    public int at(int sq) { return cells[sq] - 1; }
+    /** Side that made k in a row, or -1. */
+    public int winner() { return winner; }
+    public boolean isFull() { return moveCount == size; }
+    public boolean isOver() { return winner >= 0 || moveCount == size; }
+
+    /** Static evaluation from the side to move's point of view. */
+    public int evaluate() { return toMove == X ? eval : -eval; }
+
+    /**
+     * Places the side to move's stone on empty square {@code sq} and passes the turn.
+     * Returns true if that completed k in a row; the game is then over, and only {@link #undo} is allowed.
+     */
+    public boolean play(int sq) {
+        int side = toMove;
+        boolean won = false;
+        for (int w : windowsOf[sq]) {
+            eval -= windowValue(w);
+            int c = side == X ? ++countX[w] : ++countO[w];
+            if (c == k) won = true;
+            eval += windowValue(w);
+        }
+        cells[sq] = (byte) (side + 1);
+        hash ^= keys[side][sq] ^ oToMove;
+        moves[moveCount++] = sq;
+        touchNeighbours(sq, 1);
+        toMove = side ^ 1;
+        if (won) winner = side;
+        return won;
+    }
+
+    /** Takes back the last move. */
+    public void undo() {
+        int sq = moves[--moveCount];
+        int side = cells[sq] - 1;
+        for (int w : windowsOf[sq]) {
+            eval -= windowValue(w);
+            if (side == X) countX[w]--; else countO[w]--;
+            eval += windowValue(w);
+        }
+        cells[sq] = 0;
+        hash ^= keys[side][sq] ^ oToMove;
+        touchNeighbours(sq, -1);
+        toMove = side;
+        winner = -1;
+    }
+
+    /**
+     * Fills {@code out} with the squares worth searching and returns how many: the empty squares near a
+     * stone (all empty squares on boards small enough to need no pruning), or the centre on an empty board.
+     */
+    public int candidates(int[] out) {
+        int count = 0;
+        if (moveCount == 0) {
+            out[count++] = (n / 2) * m + m / 2;
+            return count;
+        }
+        boolean all = size <= 25;
+        for (int sq = 0; sq < size; sq++) {
+            if (cells[sq] == 0 && (all || near[sq] > 0)) out[count++] = sq;
+        }
+        return count;
+    }
+
+    /** How much {@code sq} matters to both sides right now (attack plus defence), for move ordering. */
+    public int threat(int sq) {
+        int t = 0;
+        for (int w : windowsOf[sq]) {
+            if (countO[w] == 0) t += weight[countX[w] + 1];
+            if (countX[w] == 0) t += weight[countO[w] + 1];
+        }
+        return t;
+    }
+
+    private int windowValue(int w) {
+        int x = countX[w], o = countO[w];
+        if (o == 0) return x == k ? 0 : weight[x];
+        if (x == 0) return o == k ? 0 : -weight[o];
+        return 0;
+    }
+
+    private void touchNeighbours(int sq, int delta) {
+        int x0 = sq % m, y0 = sq / m;
+        for (int y = Math.max(0, y0 - NEAR); y <= Math.min(n - 1, y0 + NEAR); y++) {
+            for (int x = Math.max(0, x0 - NEAR); x <= Math.min(m - 1, x0 + NEAR); x++) near[y * m + x] += delta;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Opponent backed by the m,n,k engine ({@link MnkBoard} + {@link MnkSearch}): iterative deepening within
+ * a per-move time budget, so it also plays boards far too large to search to the end. Through the
+ * {@link Opponent} interface it plays the 3x3 {@link TicTacToeGame} (where it always searches to the end);
+ * {@link #chooseMove(MnkBoard)} plays any board. The transposition table is kept between moves. With more
+ * than one thread, searches on boards of at least {@link #PARALLEL_MIN_SQUARES} squares split their root
+ * moves over a pool of that many threads (see {@link MnkSearch}). Smaller boards are solved too quickly to
+ * gain from it. Opponents asking for the same thread count share one pool of daemon threads, so nothing
+ * needs closing.
+ *
+ * Each calling thread keeps its own 3x3 board and searches, reused from move to move: a 3x3 move loads
+ * the game into that board, and {@link #chooseMove(MnkBoard)} reuses the search it made for the same board
+ * object last time. So after the first move of a game, choosing a move allocates nothing.
+ */
+public class MnkOpponent implements Opponent {
+    static final int PARALLEL_MIN_SQUARES = 49;   // 7x7
+    private static final ConcurrentHashMap<Integer, ForkJoinPool> POOLS = new ConcurrentHashMap<>();
+
+    private final long budgetMillis;
+    private final int maxDepth;
+    private final TranspositionTable table;
+    private final ForkJoinPool pool;      // null = single-threaded
+    private final LongAdder nodes = new LongAdder();
+    private final ThreadLocal<Searches> searches = ThreadLocal.withInitial(Searches::new);
+
+    /** One thread's reusable boards and searches. */
+    private final class Searches {
+        final MnkBoard ticTacToe = new MnkBoard(3, 3, 3);
+        final MnkSearch onTicTacToe = searchFor(ticTacToe);
+        MnkSearch last;              // for the last board passed to chooseMove(MnkBoard)
+        MnkBoard lastBoard;
+    }
+
+    /** One second a move, one thread per core (on boards big enough to use them). */
+    public MnkOpponent() { this(1000, Runtime.getRuntime().availableProcessors()); }
+
+    public MnkOpponent(long budgetMillis) { this(budgetMillis, 1); }
+
+    public MnkOpponent(long budgetMillis, int threads) { this(budgetMillis, 64, new TranspositionTable(20), threads); }
+
+    public MnkOpponent(long budgetMillis, int maxDepth, TranspositionTable table, int threads) {
+        this.budgetMillis = budgetMillis;
+        this.maxDepth = maxDepth;
+        this.table = table;
+        this.pool = threads > 1 ? POOLS.computeIfAbsent(threads, ForkJoinPool::new) : null;
+    }
+
+    @Override
+    public int chooseMove(TicTacToeGame game, TicTacToeGame.Mark me) {
+        Searches s = searches.get();
+        s.ticTacToe.setTo(game);
+        return run(s.onTicTacToe);
+    }
+
+    /** Best move for the side to move on {@code board}, which is left as it was. */
+    public int chooseMove(MnkBoard board) {
+        Searches s = searches.get();
+        if (s.lastBoard != board) {
+            s.last = searchFor(board);
+            s.lastBoard = board;
+        }
+        return run(s.last);
+    }
+
+    private MnkSearch searchFor(MnkBoard board) {
+        return new MnkSearch(board, table, board.size >= PARALLEL_MIN_SQUARES ? pool : null);
+    }
+
+    private int run(MnkSearch search) {
+        int move = search.search(budgetMillis * 1_000_000L, maxDepth);
+        nodes.add(search.nodes());
+        return move;
+    }
+
+    @Override
+    public long nodesSearched() { return nodes.sum(); }
+}
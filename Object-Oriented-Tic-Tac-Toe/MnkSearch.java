@@ -0,0 +1,245 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Iterative-deepening alpha-beta (negamax) over an {@link MnkBoard}, within a time budget.
+ *
+ * Each iteration searches one ply deeper than the last, until the budget runs out, the result is a
+ * proven win or loss, or the board is full. An iteration cut short by the clock is thrown away, so
+ * the answer is always the best move of the deepest completed iteration.
+ *
+ * Move ordering: the transposition table's move first, then this ply's two killer moves (quiet moves
+ * that caused a cutoff in a sibling), then the rest by history score (cutoffs anywhere, weighted by
+ * depth squared) plus the board's threat score. One search object serves one board and is meant to
+ * be kept for the whole game: all buffers, and with a pool the helpers and their tasks, are made up front.
+ * A single-threaded {@link #search} then allocates nothing; a split one allocates only the few bytes the
+ * pool needs to park the caller while it waits for the helpers.
+ *
+ * With a pool, each iteration splits at the root: the first (best-so-far) move is searched alone to set
+ * alpha, then the pool's threads and the caller take the remaining root moves one at a time, each on its
+ * own board (set to the searched position at the start of every search) with its own killers and
+ * history, sharing the transposition table and the best score so far. If any of them runs out of time,
+ * the whole iteration is thrown away, as above. Every root move is searched with a window just below
+ * that score, so any move that ties the best gets an exact score, and ties go to the lowest square
+ * whichever thread finished first.
+ */
+public final class MnkSearch {
+    public static final int WIN = 30000;          // minus the plies to the win, so quicker wins score higher
+    static final int WIN_BOUND = WIN - 1000;      // scores beyond this are proven results
+    static final int EVAL_CAP = WIN_BOUND - 1;
+    private static final int INF = WIN + 1;
+
+    private final MnkBoard board;
+    private final TranspositionTable table;
+    private final int[][] moveBuf, orderBuf;      // per ply
+    private final int[][] killers;                // per ply, two slots
+    private final int[][] history;                // per side and square
+    private final ForkJoinPool pool;              // null = search on the calling thread only
+    private final int[] rootScores;
+
+    // Root split state, owned by the search that has the pool; helpers reach it through root
+    private final MnkSearch root;
+    private final MnkSearch[] helpers;
+    private final ForkJoinTask<?>[] tasks;        // tasks[i] runs helpers[i].takeRootMoves()
+    private final AtomicInteger next = new AtomicInteger(), alpha = new AtomicInteger();
+    private int rootDepth, rootCount;
+
+    private long deadline;
+    private long nodes;
+    private boolean aborted;
+    private int completedDepth, score;
+
+    public MnkSearch(MnkBoard board, TranspositionTable table) { this(board, table, null); }
+
+    /** Splits each iteration's root moves over {@code pool} (shared with nothing else while searching) and the caller. */
+    public MnkSearch(MnkBoard board, TranspositionTable table, ForkJoinPool pool) {
+        this(board, table, pool, null);
+    }
+
+    private MnkSearch(MnkBoard board, TranspositionTable table, ForkJoinPool pool, MnkSearch root) {
+        if (board.size > TranspositionTable.NO_MOVE) throw new IllegalArgumentException("board too large for 8-bit table moves: " + board.size);
+        this.board = board;
+        this.table = table;
+        int plies = board.size + 1;
+        moveBuf = new int[plies][board.size];
+        orderBuf = new int[plies][board.size];
+        killers = new int[plies][2];
+        history = new int[2][board.size];
+        rootScores = new int[board.size];
+        this.pool = pool;
+        this.root = root == null ? this : root;
+        helpers = new MnkSearch[pool == null ? 0 : pool.getParallelism() - 1];
+        tasks = new ForkJoinTask<?>[helpers.length];
+        for (int i = 0; i < helpers.length; i++) {
+            MnkSearch h = helpers[i] = new MnkSearch(board.copy(), table, null, this);
+            tasks[i] = ForkJoinTask.adapt(h::takeRootMoves);
+        }
+    }
+
+    /**
+     * Best move for the side to move (the position must not be over), searching at most {@code maxDepth}
+     * plies and stopping after about {@code budgetNanos}. Depth 1 always completes, whatever the budget.
+     */
+    public int search(long budgetNanos, int maxDepth) {
+        reset(System.nanoTime() + budgetNanos);
+        for (MnkSearch h : helpers) {
+            h.board.setTo(board);
+            h.reset(deadline);
+        }
+
+        int remaining = board.size - board.moveCount();
+        int best = -1;
+        for (int depth = 1; depth <= Math.min(maxDepth, remaining); depth++) {
+            int move = searchRoot(depth, best);
+            if (aborted) break;
+            best = move;
+            completedDepth = depth;
+            for (MnkSearch h : helpers) h.completedDepth = depth;
+            if (Math.abs(score) >= WIN_BOUND) break; // proven; deeper won't change it
+        }
+        for (MnkSearch h : helpers) nodes += h.nodes;
+        return best;
+    }
+
+    private void reset(long deadline) {
+        this.deadline = deadline;
+        nodes = 0;
+        aborted = false;
+        completedDepth = 0;
+        for (int[] k : killers) k[0] = k[1] = -1;
+        for (int[] h : history) for (int i = 0; i < h.length; i++) h[i] >>= 2; // age what earlier searches learned
+    }
+
+    public int completedDepth() { return completedDepth; }
+    /** Score of the returned move from the mover's side; beyond +-{@code WIN_BOUND} it is a forced win/loss. */
+    public int score() { return score; }
+    public long nodes() { return nodes; }
+
+    /** The best move of one iteration, or -1 if it ran out of time (then nothing is stored or kept). */
+    private int searchRoot(int depth, int previousBest) {
+        int[] moves = moveBuf[0];
+        int count = orderMoves(0, previousBest);
+        rootScores[0] = rootScore(moves[0], depth, -INF);
+        if (aborted) return -1;
+
+        rootDepth = depth;
+        rootCount = count;
+        next.set(1);
+        alpha.set(rootScores[0]);
+        int used = count > 2 ? tasks.length : 0;
+        for (int i = 0; i < used; i++) {
+            tasks[i].reinitialize();
+            pool.execute(tasks[i]);
+        }
+        takeRootMoves();
+        for (int i = 0; i < used; i++) {
+            tasks[i].join();
+            aborted |= helpers[i].aborted;
+        }
+        if (aborted) return -1; // some root moves hold no score
+
+        int best = 0;
+        for (int i = 1; i < count; i++) {
+            if (rootScores[i] > rootScores[best] || rootScores[i] == rootScores[best] && moves[i] < moves[best]) best = i;
+        }
+        score = rootScores[best];
+        table.store(board.hash(), score, TranspositionTable.EXACT, moves[best], depth);
+        return moves[best];
+    }
+
+    /** Searches the root's moves {@code moves[next++]} until none are left or time runs out, raising the shared alpha. */
+    private void takeRootMoves() {
+        int[] moves = root.moveBuf[0], scores = root.rootScores;
+        int depth = root.rootDepth, count = root.rootCount;
+        for (int i; !aborted && (i = root.next.getAndIncrement()) < count; ) {
+            int s = rootScore(moves[i], depth, root.alpha.get());
+            scores[i] = s;
+            root.alpha.accumulateAndGet(s, Math::max);
+        }
+    }
+
+    /** Score of root move {@code sq}: exact if it is at least {@code alpha}, otherwise only known to be below it. */
+    private int rootScore(int sq, int depth, int alpha) {
+        int s = board.play(sq) ? WIN - 1 : board.isFull() ? 0 : -negamax(depth - 1, 1, -INF, -(alpha - 1));
+        board.undo();
+        return s;
+    }
+
+    private int negamax(int depth, int ply, int alpha, int beta) {
+        if ((++nodes & 1023) == 0 && completedDepth > 0 && System.nanoTime() > deadline) aborted = true;
+        if (aborted) return 0;
+
+        int alpha0 = alpha;
+        int ttMove = -1;
+        long hit = table.probe(board.hash());
+        if (hit != 0) {
+            ttMove = TranspositionTable.move(hit);
+            if (ttMove == TranspositionTable.NO_MOVE) ttMove = -1;
+            if (TranspositionTable.depth(hit) >= depth) {
+                int s = fromTable(TranspositionTable.score(hit), ply);
+                switch (TranspositionTable.bound(hit)) {
+                    case TranspositionTable.EXACT -> { return s; }
+                    case TranspositionTable.LOWER -> alpha = Math.max(alpha, s);
+                    case TranspositionTable.UPPER -> beta = Math.min(beta, s);
+                    default -> { }
+                }
+                if (alpha >= beta) return s;
+            }
+        }
+        if (depth == 0) return Math.max(-EVAL_CAP, Math.min(EVAL_CAP, board.evaluate()));
+
+        int[] moves = moveBuf[ply];
+        int count = orderMoves(ply, ttMove);
+        int best = -INF, bestMove = TranspositionTable.NO_MOVE;
+        for (int i = 0; i < count; i++) {
+            int sq = moves[i];
+            int s = board.play(sq) ? WIN - ply - 1 : board.isFull() ? 0 : -negamax(depth - 1, ply + 1, -beta, -alpha);
+            board.undo();
+            if (aborted) return 0;
+            if (s > best) { best = s; bestMove = sq; }
+            if (best > alpha) alpha = best;
+            if (alpha >= beta) {
+                if (sq != ttMove && killers[ply][0] != sq) {
+                    killers[ply][1] = killers[ply][0];
+                    killers[ply][0] = sq;
+                }
+                history[board.toMove()][sq] += depth * depth;
+                break;
+            }
+        }
+
+        int bound = best <= alpha0 ? TranspositionTable.UPPER : best >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+        table.store(board.hash(), toTable(best, ply), bound, bestMove, depth);
+        return best;
+    }
+
+    /** Fills moveBuf[ply] with the candidates, best first, and returns how many there are. */
+    private int orderMoves(int ply, int first) {
+        int[] moves = moveBuf[ply], keys = orderBuf[ply];
+        int count = board.candidates(moves);
+        int side = board.toMove();
+        for (int i = 0; i < count; i++) {
+            int sq = moves[i];
+            keys[i] = sq == first ? Integer.MAX_VALUE
+                    : sq == killers[ply][0] ? Integer.MAX_VALUE - 2
+                    : sq == killers[ply][1] ? Integer.MAX_VALUE - 3
+                    : Math.min(history[side][sq] + board.threat(sq), Integer.MAX_VALUE - 4);
+        }
+        // insertion sort, descending; ties keep square order so the search is deterministic
+        for (int i = 1; i < count; i++) {
+            int sq = moves[i], key = keys[i], j = i - 1;
+            for (; j >= 0 && keys[j] < key; j--) {
+                moves[j + 1] = moves[j];
+                keys[j + 1] = keys[j];
+            }
+            moves[j + 1] = sq;
+            keys[j + 1] = key;
+        }
+        return count;
+    }
+
+    // Win scores count plies from the root; the table keeps them relative to the stored position instead
+    private static int toTable(int s, int ply) { return s >= WIN_BOUND ? s + ply : s <= -WIN_BOUND ? s - ply : s; }
+    private static int fromTable(int s, int ply) { return s >= WIN_BOUND ? s - ply : s <= -WIN_BOUND ? s + ply : s; }
+}
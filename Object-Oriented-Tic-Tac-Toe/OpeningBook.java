@@ -0,0 +1,163 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Perfect play for every tic-tac-toe position that can arise in a game, precomputed into a file and read
+ * back through a memory map. Layout (big-endian):
+ * <pre>
+ *   int magic 'TTTB', int version,
+ *   byte[3^9] entries, indexed by the position in base 3 (digit i is square i: 0 empty, 1 X, 2 O),
+ *   int crc32 of everything before it
+ * </pre>
+ * An entry holds the best move for the side to move (low 4 bits) and the result of best play for that
+ * side (bits 4-5: {@link #WIN}, {@link #DRAW} or {@link #LOSS}). It is 0 for positions that are already
+ * over or can't be reached. The generator solves one position per symmetry class (the board's 4 rotations,
+ * each optionally mirrored) and copies the answer to every image. Lookups therefore need no transform:
+ * two table reads give the index, and one byte gives the answer. The mapped table is read-only, so one
+ * book can serve any number of threads.
+ */
+public final class OpeningBook {
+    static final int MAGIC = 0x54545442; // "TTTB"
+    static final int VERSION = 1;
+    static final int POSITIONS = 19683;  // 3^9
+    private static final int HEADER = 8;
+    public static final int WIN = 1, DRAW = 2, LOSS = 3;
+
+    /** Sum of 3^i over the set bits i of a 9-bit mask. */
+    private static final int[] BASE3 = new int[512];
+    /** The 8 symmetries as square permutations: under symmetry s, square sq moves to SYMMETRY[s][sq]. */
+    private static final int[][] SYMMETRY = new int[8][9];
+    static {
+        for (int mask = 1; mask < 512; mask++) {
+            int low = Integer.numberOfTrailingZeros(mask), pow = 1;
+            for (int i = 0; i < low; i++) pow *= 3;
+            BASE3[mask] = BASE3[mask & (mask - 1)] + pow;
+        }
+        for (int s = 0; s < 8; s++) {
+            for (int sq = 0; sq < 9; sq++) {
+                int r = sq / 3, c = sq % 3;
+                for (int turn = 0; turn < (s & 3); turn++) { int t = r; r = c; c = 2 - t; } // quarter turns clockwise
+                if (s >= 4) c = 2 - c;                                                    // then mirror
+                SYMMETRY[s][sq] = r * 3 + c;
+            }
+        }
+    }
+
+    private final ByteBuffer map;
+
+    private OpeningBook(ByteBuffer map) { this.map = map; }
+
+    /** Maps {@code file}, checking its header and checksum once up front. */
+    public static OpeningBook open(Path file) throws IOException {
+        ByteBuffer in;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            in = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+        if (in.limit() != HEADER + POSITIONS + 4 || in.getInt(0) != MAGIC) throw new IOException(file + " is not a tic-tac-toe book");
+        int version = in.getInt(4);
+        if (version != VERSION) throw new IOException(file + ": unsupported book version " + version);
+        CRC32 crc = new CRC32();
+        crc.update(in.duplicate().limit(in.limit() - 4));
+        if ((int) crc.getValue() != in.getInt(in.limit() - 4)) throw new IOException(file + " is corrupt (checksum mismatch)");
+        return new OpeningBook(in);
+    }
+
+    /** Table index of the position with X on {@code x} and O on {@code o} (9-bit masks, see {@link Bitboard}). */
+    public static int index(int x, int o) { return BASE3[x] + 2 * BASE3[o]; }
+
+    /** The entry for X on {@code x} and O on {@code o}; the side to move is the one with fewer stones, X on a tie. */
+    public int entry(int x, int o) { return map.get(HEADER + index(x, o)) & 0xFF; }
+
+    public static int move(int entry) { return entry & 0xF; }
+    public static int outcome(int entry) { return entry >>> 4 & 3; }
+
+    /** Solves every reachable position and writes the book to {@code file}, replacing it atomically. */
+    public static void generate(Path file) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(HEADER + POSITIONS + 4);
+        buf.putInt(MAGIC).putInt(VERSION).put(solveAll());
+        CRC32 crc = new CRC32();
+        crc.update(buf.array(), 0, buf.position());
+        buf.putInt((int) crc.getValue()).flip();
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buf.hasRemaining()) ch.write(buf);
+            ch.force(false);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** The entries of the book, indexed like the file. */
+    static byte[] solveAll() {
+        int[] score = new int[POSITIONS], best = new int[POSITIONS];
+        Arrays.fill(score, Integer.MIN_VALUE);
+        solve(0, 0, score, best);
+
+        byte[] entries = new byte[POSITIONS];
+        for (int key = 0; key < POSITIONS; key++) {
+            if (score[key] == Integer.MIN_VALUE) continue; // not a canonical position that needed solving
+            int x = 0, o = 0;
+            for (int sq = 0, k = key; sq < 9; sq++, k /= 3) {
+                if (k % 3 == 1) x |= 1 << sq; else if (k % 3 == 2) o |= 1 << sq;
+            }
+            int outcome = score[key] > 0 ? WIN : score[key] == 0 ? DRAW : LOSS;
+            for (int s = 0; s < 8; s++) {
+                entries[index(transform(x, s), transform(o, s))] = (byte) (outcome << 4 | SYMMETRY[s][best[key]]);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Negamax score of the position (positive = the side to move wins, sooner wins higher), memoized on its
+     * canonical form: the image with the smallest index. The best move of each canonical position goes in
+     * {@code best}; among equally good moves, the lowest square.
+     */
+    private static int solve(int x, int o, int[] score, int[] best) {
+        int cx = x, co = o, key = index(x, o);
+        for (int s = 1; s < 8; s++) {
+            int tx = transform(x, s), to = transform(o, s), k = index(tx, to);
+            if (k < key) { cx = tx; co = to; key = k; }
+        }
+        if (score[key] != Integer.MIN_VALUE) return score[key];
+
+        boolean xToMove = Integer.bitCount(cx) == Integer.bitCount(co);
+        int bestScore = Integer.MIN_VALUE, bestMove = -1;
+        for (int free = Bitboard.free(cx, co); free != 0; free &= free - 1) {
+            int sq = Integer.numberOfTrailingZeros(free);
+            int nx = xToMove ? cx | 1 << sq : cx, no = xToMove ? co : co | 1 << sq;
+            int empties = Integer.bitCount(Bitboard.free(nx, no));
+            int s = Bitboard.completesLine(xToMove ? nx : no, sq) ? 10 + empties
+                    : empties == 0 ? 0 : -solve(nx, no, score, best);
+            if (s > bestScore) { bestScore = s; bestMove = sq; }
+        }
+        score[key] = bestScore;
+        best[key] = bestMove;
+        return bestScore;
+    }
+
+    private static int transform(int mask, int s) {
+        int out = 0;
+        for (int b = mask; b != 0; b &= b - 1) out |= 1 << SYMMETRY[s][Integer.numberOfTrailingZeros(b)];
+        return out;
+    }
+
+    /** Writes the book to the given file (default tictactoe.book). */
+    public static void main(String[] args) throws IOException {
+        Path file = Path.of(args.length > 0 ? args[0] : "tictactoe.book");
+        generate(file);
+        OpeningBook book = open(file);
+        int positions = 0;
+        for (int i = 0; i < POSITIONS; i++) if (book.map.get(HEADER + i) != 0) positions++;
+        System.out.println("Wrote " + file + ": " + positions + " positions to move in, "
+                + Files.size(file) + " bytes; the empty board is a " + new String[] { "?", "win", "draw", "loss" }[outcome(book.entry(0, 0))]);
+    }
+}
@@ -1,5 +1,8 @@
 public interface Opponent {
     /** Choose a move (0..8). Assumed to be called only on the opponent's turn and when the game is not over. */
     int chooseMove(TicTacToeGame game, TicTacToeGame.Mark me);
+
+    /** Positions searched so far, for statistics; 0 for opponents that don't search or don't count. */
+    default long nodesSearched() { return 0; }
 }
 
@@ -0,0 +1,18 @@
+import java.util.SplittableRandom;
+
+/** Plays a uniformly random legal move; the baseline in a {@link Tournament}. */
+public class RandomOpponent implements Opponent {
+    private SplittableRandom rng;
+
+    public RandomOpponent(long seed) { reseed(seed); }
+
+    /** Restarts the move sequence from {@code seed}, e.g. so a game plays out the same whichever thread runs it. */
+    public void reseed(long seed) { rng = new SplittableRandom(seed); }
+
+    @Override
+    public int chooseMove(TicTacToeGame game, TicTacToeGame.Mark me) {
+        int free = game.getBits(TicTacToeGame.Mark.EMPTY);
+        for (int skip = rng.nextInt(Integer.bitCount(free)); skip > 0; skip--) free &= free - 1;
+        return Integer.numberOfTrailingZeros(free);
+    }
+}
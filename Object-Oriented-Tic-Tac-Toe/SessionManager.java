@@ -0,0 +1,127 @@
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Hosts many {@link TicTacToeGame}s at once for a headless server, each against one shared {@link Opponent}.
+ *
+ * Requests to the same game run strictly in order, because each is chained onto the previous one's future.
+ * Requests to different games, including the opponent's replies, run in parallel on a fixed pool. No
+ * request ever blocks a pool thread: waiting is always done by chaining, so a pool of about one thread per
+ * core keeps up with any number of games. (Java 17 has no virtual threads, hence the chains.) A game is
+ * dropped as soon as it finishes; its last reply says how it ended. The opponent must be safe to call from
+ * several threads at once, as {@link MinimaxOpponent} and {@link BookOpponent} are.
+ */
+public class SessionManager implements AutoCloseable {
+    /** Result of a request: the game, the opponent's reply to it (-1 if none) and the game state afterwards. */
+    public record Reply(long id, int aiMove, String status) { }
+
+    private final Opponent opponent;
+    private final ExecutorService pool;
+    private final ConcurrentHashMap<Long, Session> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong();
+
+    private static final class Session {
+        final long id;
+        final TicTacToeGame game = new TicTacToeGame();
+        final TicTacToeGame.Mark aiAs;
+        private CompletableFuture<?> tail = CompletableFuture.completedFuture(null); // guarded by this
+
+        Session(long id, TicTacToeGame.Mark aiAs) {
+            this.id = id;
+            this.aiAs = aiAs;
+        }
+    }
+
+    public SessionManager(Opponent opponent, int threads) {
+        this.opponent = opponent;
+        this.pool = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread t = new Thread(r, "game-session");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Starts a game in which the server plays {@code aiAs}; if that is X, the reply carries its first move. */
+    public CompletableFuture<Reply> create(TicTacToeGame.Mark aiAs) {
+        if (aiAs == TicTacToeGame.Mark.EMPTY) throw new IllegalArgumentException("the server must play X or O");
+        Session s = new Session(nextId.incrementAndGet(), aiAs);
+        sessions.put(s.id, s);
+        return enqueue(s, game -> reply(s, game.getCurrent() == aiAs ? answer(s) : -1));
+    }
+
+    /** Plays {@code index} (0..8) for the human side of game {@code id}, then the server's answer, if the game goes on. */
+    public CompletableFuture<Reply> move(long id, int index) {
+        return enqueue(id, (s, game) -> {
+            if (game.getCurrent() == s.aiAs || !game.play(index)) throw new IllegalArgumentException("illegal move " + (index + 1));
+            return reply(s, game.isGameOver() ? -1 : answer(s));
+        });
+    }
+
+    /** The squares (0..8) that can be played in game {@code id}. */
+    public CompletableFuture<List<Integer>> legalMoves(long id) {
+        return enqueue(id, (s, game) -> game.legalMoves());
+    }
+
+    /** Game {@code id}'s board, squares 0..8. */
+    public CompletableFuture<TicTacToeGame.Mark[]> board(long id) {
+        return enqueue(id, (s, game) -> game.getBoard());
+    }
+
+    /** Abandons game {@code id} once its earlier requests are done; false if there was no such game. */
+    public CompletableFuture<Boolean> end(long id) {
+        Session s = sessions.get(id);
+        if (s == null) return CompletableFuture.completedFuture(false);
+        return enqueue(s, game -> sessions.remove(id, s));
+    }
+
+    /** Games in progress. */
+    public int size() { return sessions.size(); }
+
+    @Override
+    public void close() { pool.shutdownNow(); }
+
+    /** "PLAYING", "X_WINS", "O_WINS" or "DRAW". */
+    public static String status(TicTacToeGame game) {
+        if (!game.isGameOver()) return "PLAYING";
+        return switch (game.getWinner()) {
+            case X -> "X_WINS";
+            case O -> "O_WINS";
+            default -> "DRAW";
+        };
+    }
+
+    private int answer(Session s) {
+        int move = opponent.chooseMove(s.game, s.aiAs);
+        if (!s.game.play(move)) throw new IllegalStateException("opponent chose illegal move " + (move + 1));
+        return move;
+    }
+
+    private Reply reply(Session s, int aiMove) {
+        if (s.game.isGameOver()) sessions.remove(s.id);
+        return new Reply(s.id, aiMove, status(s.game));
+    }
+
+    private <T> CompletableFuture<T> enqueue(long id, BiFunction<Session, TicTacToeGame, T> op) {
+        Session s = sessions.get(id);
+        if (s == null) return CompletableFuture.failedFuture(new IllegalArgumentException("no game " + id));
+        return enqueue(s, game -> {
+            if (sessions.get(id) != s) throw new IllegalArgumentException("no game " + id); // finished or ended while queued
+            return op.apply(s, game);
+        });
+    }
+
+    /** Runs {@code op} on the pool after every earlier request to {@code s}, whether or not those failed. */
+    private <T> CompletableFuture<T> enqueue(Session s, Function<TicTacToeGame, T> op) {
+        synchronized (s) {
+            CompletableFuture<T> f = s.tail.handleAsync((v, ex) -> op.apply(s.game), pool);
+            s.tail = f;
+            return f;
+        }
+    }
+}
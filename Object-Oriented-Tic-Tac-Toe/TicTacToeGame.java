@@ -7,6 +7,7 @@ public class TicTacToeGame {
     public enum Mark { X, O, EMPTY }
 
     private final Mark[] board = new Mark[9];
+    private int xBits, oBits;   // the same board as bitboards, see Bitboard
     private Mark current = Mark.X;
     private boolean gameOver = false;
     private Mark winner = Mark.EMPTY;
@@ -16,6 +17,7 @@ public class TicTacToeGame {
 
     public void reset() {
         Arrays.fill(board, Mark.EMPTY);
+        xBits = oBits = 0;
         current = Mark.X;
         winner = Mark.EMPTY;
         gameOver = false;
@@ -25,6 +27,9 @@ public class TicTacToeGame {
     /** Returns defensive copy of the board (index 0..8). */
     public Mark[] getBoard() { return board.clone(); }
 
+    /** Squares holding {@code mark} as a 9-bit mask (bit i = index i); no copying, unlike {@link #getBoard()}. */
+    public int getBits(Mark mark) { return mark == Mark.X ? xBits : mark == Mark.O ? oBits : Bitboard.free(xBits, oBits); }
+
     public Mark getCurrent() { return current; }
 
     public boolean isGameOver() { return gameOver; }
@@ -36,11 +41,11 @@ public class TicTacToeGame {
         if (gameOver || index < 0 || index > 8 || board[index] != Mark.EMPTY) return false;
 
         board[index] = current;
+        if (current == Mark.X) xBits |= 1 << index; else oBits |= 1 << index;
         fireMove(index, current);
 
-        Mark w = computeWinner();
-        if (w != Mark.EMPTY) {
-            winner = w;
+        if (Bitboard.completesLine(getBits(current), index)) {
+            winner = current;
             gameOver = true;
             fireGameOver(winner);
         } else if (isFull()) {
@@ -56,7 +61,7 @@ public class TicTacToeGame {
     public List<Integer> legalMoves() {
         List<Integer> moves = new ArrayList<>();
         if (gameOver) return moves;
-        for (int i = 0; i < 9; i++) if (board[i] == Mark.EMPTY) moves.add(i);
+        for (int free = Bitboard.free(xBits, oBits); free != 0; free &= free - 1) moves.add(Integer.numberOfTrailingZeros(free));
         return moves;
     }
 
@@ -67,20 +72,6 @@ public class TicTacToeGame {
     private void fireGameOver(Mark winner) { for (var l : listeners) l.onGameOver(winner); }
     private void fireReset(Mark starting) { for (var l : listeners) l.onReset(starting); }
 
-    private boolean isFull() { for (Mark m : board) if (m == Mark.EMPTY) return false; return true; }
-
-    private static final int[][] LINES = {
-            {0,1,2},{3,4,5},{6,7,8},
-            {0,3,6},{1,4,7},{2,5,8},
-            {0,4,8},{2,4,6}
-    };
-
-    private Mark computeWinner() {
-        for (int[] line : LINES) {
-            Mark a = board[line[0]], b = board[line[1]], c = board[line[2]];
-            if (a != Mark.EMPTY && a == b && b == c) return a;
-        }
-        return Mark.EMPTY;
-    }
+    private boolean isFull() { return (xBits | oBits) == Bitboard.FULL; }
 }
 
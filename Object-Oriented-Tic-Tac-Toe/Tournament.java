@@ -0,0 +1,251 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.function.Supplier;
+
+/**
+ * Round-robin self-play between {@link Opponent}s, headless and in parallel. Every pair of players meets
+ * equally often. Games come in twins that share a seeded random opening, one game with each player as X,
+ * so neither side gets the better openings. Everything about a game follows from its index and the seed:
+ * its pairing, its opening, and the moves of a {@link RandomOpponent}. Each thread plays a fixed share of
+ * the games, so a run repeats exactly for the same seed and thread count. Players that keep a
+ * transposition table between games may break ties between equal moves differently when the games are
+ * split another way, so results agree across thread counts only statistically.
+ *
+ * Each worker thread has its own player instances, its own reused {@link TicTacToeGame} and its own
+ * counters. These are merged once at the end, so the hot loop takes no locks, allocates almost nothing,
+ * and works on the game's bitboards ({@link TicTacToeGame#getBits}) rather than copying boards out.
+ *
+ * {@code java Tournament [--players random,minimax,book,mnk,shallow] [--games 1000000] [--opening 2]
+ * [--threads N] [--seed 1]}
+ */
+public class Tournament {
+    static final String USAGE = "java Tournament [--players random,minimax,book,mnk,shallow] [--games 1000000] [--opening 2]"
+            + " [--threads N] [--seed 1]";
+    private static final int CHUNK = 4096;   // worker t of T plays chunks t, t + T, t + 2T, ...
+
+    private final List<String> names;
+    private final List<Supplier<Opponent>> players;
+    private final int[][] pairs;             // unordered pairings, first < second
+    private final long games, seed;
+    private final int openingPlies;
+
+    /** Results, per ordered pairing [x * P + o]: X wins, draws, O wins. */
+    private final long[] xWins, draws, oWins;
+    /** Per player: moves made, positions searched, and time per move. */
+    private final long[] moves, nodes;
+    private final LatencyHistogram[] latency;
+
+    public Tournament(Map<String, Supplier<Opponent>> players, long games, int openingPlies, long seed) {
+        if (players.size() < 2) throw new IllegalArgumentException("a tournament needs at least two players");
+        this.names = new ArrayList<>(players.keySet());
+        this.players = new ArrayList<>(players.values());
+        int p = names.size();
+        pairs = new int[p * (p - 1) / 2][];
+        for (int a = 0, i = 0; a < p; a++) for (int b = a + 1; b < p; b++) pairs[i++] = new int[] { a, b };
+        this.games = games;
+        this.openingPlies = openingPlies;
+        this.seed = seed;
+        xWins = new long[p * p];
+        draws = new long[p * p];
+        oWins = new long[p * p];
+        moves = new long[p];
+        nodes = new long[p];
+        latency = new LatencyHistogram[p];
+        for (int i = 0; i < p; i++) latency[i] = new LatencyHistogram();
+    }
+
+    /** Plays every game on {@code threads} threads and returns once all are done. */
+    public void run(int threads) throws InterruptedException {
+        threads = Math.max(1, threads);
+        List<Worker> workers = new ArrayList<>();
+        List<Thread> running = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Worker w = new Worker(t, threads);
+            workers.add(w);
+            Thread thread = new Thread(w, "tournament-" + t);
+            running.add(thread);
+            thread.start();
+        }
+        for (Thread t : running) t.join();
+        for (Worker w : workers) {
+            if (w.failure != null) throw new IllegalStateException("worker failed", w.failure);
+            w.mergeInto(this);
+        }
+    }
+
+    /** One thread's players, game and counters. */
+    private final class Worker implements Runnable {
+        private final int index, stride;
+        private final Opponent[] opponents = new Opponent[names.size()];
+        private final TicTacToeGame game = new TicTacToeGame();
+        private final long[] xWins = new long[Tournament.this.xWins.length], draws = new long[xWins.length], oWins = new long[xWins.length];
+        private final long[] moves = new long[opponents.length];
+        private final LatencyHistogram[] latency = new LatencyHistogram[opponents.length];
+        private RuntimeException failure;
+
+        Worker(int index, int stride) {
+            this.index = index;
+            this.stride = stride;
+            for (int i = 0; i < opponents.length; i++) {
+                opponents[i] = players.get(i).get();
+                latency[i] = new LatencyHistogram();
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (long start = (long) index * CHUNK; start < games; start += (long) stride * CHUNK) {
+                    for (long g = start; g < Math.min(start + CHUNK, games); g++) play(g);
+                }
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+
+        private void play(long g) {
+            int[] pair = pairs[(int) ((g / 2) % pairs.length)];
+            int x = (g & 1) == 0 ? pair[0] : pair[1], o = pair[0] + pair[1] - x;
+            game.reset();
+
+            // the twins g and g ^ 1 share an opening; the rest of the game has its own seed
+            SplittableRandom opening = new SplittableRandom(seed ^ (g >>> 1) * 0x9E3779B97F4A7C15L);
+            for (int ply = 0; ply < openingPlies && !game.isGameOver(); ply++) {
+                int free = game.getBits(TicTacToeGame.Mark.EMPTY);
+                for (int skip = opening.nextInt(Integer.bitCount(free)); skip > 0; skip--) free &= free - 1;
+                game.play(Integer.numberOfTrailingZeros(free));
+            }
+            long gameSeed = opening.nextLong() ^ g;
+            if (opponents[x] instanceof RandomOpponent r) r.reseed(gameSeed);
+            if (opponents[o] instanceof RandomOpponent r) r.reseed(~gameSeed);
+
+            while (!game.isGameOver()) {
+                TicTacToeGame.Mark side = game.getCurrent();
+                int player = side == TicTacToeGame.Mark.X ? x : o;
+                long t0 = System.nanoTime();
+                int move = opponents[player].chooseMove(game, side);
+                latency[player].record(System.nanoTime() - t0);
+                moves[player]++;
+                if (!game.play(move)) throw new IllegalStateException(names.get(player) + " played illegal move " + move);
+            }
+            int cell = x * opponents.length + o;
+            switch (game.getWinner()) {
+                case X -> xWins[cell]++;
+                case O -> oWins[cell]++;
+                default -> draws[cell]++;
+            }
+        }
+
+        void mergeInto(Tournament t) {
+            for (int i = 0; i < xWins.length; i++) {
+                t.xWins[i] += xWins[i];
+                t.draws[i] += draws[i];
+                t.oWins[i] += oWins[i];
+            }
+            for (int p = 0; p < opponents.length; p++) {
+                t.moves[p] += moves[p];
+                t.nodes[p] += opponents[p].nodesSearched();
+                t.latency[p].add(latency[p]);
+            }
+        }
+    }
+
+    /** The results: each ordered pairing, then standings with search effort and move time per player. */
+    public String report() {
+        int p = names.size();
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "%-10s %-10s %10s %10s %10s%n", "X", "O", "X wins", "draws", "O wins"));
+        for (int x = 0; x < p; x++) {
+            for (int o = 0; o < p; o++) {
+                if (x == o) continue;
+                int c = x * p + o;
+                sb.append(String.format(Locale.ROOT, "%-10s %-10s %10d %10d %10d%n", names.get(x), names.get(o), xWins[c], draws[c], oWins[c]));
+            }
+        }
+        sb.append(String.format(Locale.ROOT, "%n%-10s %9s %9s %9s %9s %7s %11s %9s %9s %9s%n",
+                "player", "games", "wins", "draws", "losses", "score", "nodes/move", "p50 us", "p99 us", "max us"));
+        for (int i = 0; i < p; i++) {
+            long won = 0, drawn = 0, lost = 0;
+            for (int j = 0; j < p; j++) {
+                if (i == j) continue;
+                won += xWins[i * p + j] + oWins[j * p + i];
+                drawn += draws[i * p + j] + draws[j * p + i];
+                lost += oWins[i * p + j] + xWins[j * p + i];
+            }
+            long played = won + drawn + lost;
+            LatencyHistogram h = latency[i];
+            sb.append(String.format(Locale.ROOT, "%-10s %9d %9d %9d %9d %6.1f%% %11.1f %9.2f %9.2f %9.1f%n",
+                    names.get(i), played, won, drawn, lost, played == 0 ? 0 : 100.0 * (won + drawn / 2.0) / played,
+                    moves[i] == 0 ? 0 : nodes[i] / (double) moves[i], h.quantile(0.5) / 1e3, h.quantile(0.99) / 1e3, h.max() / 1e3));
+        }
+        return sb.toString();
+    }
+
+    /** The players {@code --players} can name. */
+    static Map<String, Supplier<Opponent>> registry(long seed) {
+        Map<String, Supplier<Opponent>> r = new LinkedHashMap<>();
+        r.put("random", () -> new RandomOpponent(seed));
+        r.put("minimax", MinimaxOpponent::new);
+        r.put("book", new Supplier<>() { // the book file is only built or mapped if a book player is wanted
+            private OpeningBook book;
+
+            @Override
+            public synchronized Opponent get() {
+                if (book == null) {
+                    try {
+                        Path file = Path.of("tictactoe.book");
+                        if (!Files.exists(file)) OpeningBook.generate(file);
+                        book = OpeningBook.open(file);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return new BookOpponent(book);
+            }
+        });
+        r.put("mnk", () -> new MnkOpponent(1000, 1));
+        r.put("shallow", () -> new MnkOpponent(1000, 2, new TranspositionTable(10), 1)); // two plies: sees threats, not forks
+        return r;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        long games, seed;
+        int opening, threads;
+        Map<String, Supplier<Opponent>> chosen = new LinkedHashMap<>();
+        try {
+            games = GameServer.argLong(args, "--games", 1_000_000);
+            opening = (int) GameServer.argLong(args, "--opening", 2);
+            threads = (int) GameServer.argLong(args, "--threads", Runtime.getRuntime().availableProcessors());
+            seed = GameServer.argLong(args, "--seed", 1);
+            String list = "random,minimax,book,mnk,shallow";
+            for (int i = 0; i + 1 < args.length; i++) if (args[i].equalsIgnoreCase("--players")) list = args[i + 1];
+
+            Map<String, Supplier<Opponent>> known = registry(seed);
+            for (String name : list.split(",")) {
+                Supplier<Opponent> s = known.get(name.trim().toLowerCase(Locale.ROOT));
+                if (s == null) throw new IllegalArgumentException("unknown player " + name + "; choose from " + known.keySet());
+                chosen.put(name.trim().toLowerCase(Locale.ROOT), s);
+            }
+        } catch (IllegalArgumentException e) {
+            GameServer.exitWithUsage(e, USAGE);
+            return;
+        }
+
+        Tournament t = new Tournament(chosen, games, opening, seed);
+        System.out.printf(Locale.ROOT, "%d games between %s, %d random opening plies, %d threads, seed %d%n",
+                games, chosen.keySet(), opening, threads, seed);
+        long start = System.nanoTime();
+        t.run(threads);
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        System.out.print(t.report());
+        System.out.printf(Locale.ROOT, "%n%.2f s, %.0f games/s%n", elapsed, games / elapsed);
+    }
+}
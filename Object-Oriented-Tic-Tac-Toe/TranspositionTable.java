@@ -0,0 +1,54 @@
+/**
+ * Fixed-size hash table of search results keyed by a 64-bit Zobrist hash. Each slot holds the key
+ * XOR-ed with its packed entry next to the entry itself, so a slot torn by two threads writing at
+ * once simply fails to verify and reads as a miss; the table needs no locks.
+ *
+ * An entry packs a score (negamax, from the side to move), the best move, how deep the result was
+ * searched, and whether the score is exact or only a lower/upper bound (fail high/low).
+ */
+public final class TranspositionTable {
+    public static final int EXACT = 1, LOWER = 2, UPPER = 3;
+    public static final int NO_MOVE = 0xFF;
+
+    private final long[] keys;
+    private final long[] entries;
+    private final int mask;
+
+    /** {@code sizeLog2} bits of index, i.e. 2^sizeLog2 slots (16 bytes each). */
+    public TranspositionTable(int sizeLog2) {
+        if (sizeLog2 < 1 || sizeLog2 > 28) throw new IllegalArgumentException("sizeLog2 out of range: " + sizeLog2);
+        keys = new long[1 << sizeLog2];
+        entries = new long[1 << sizeLog2];
+        mask = (1 << sizeLog2) - 1;
+    }
+
+    /** The packed entry stored for {@code key}, or 0 if there is none. */
+    public long probe(long key) {
+        int i = (int) key & mask;
+        long e = entries[i];
+        return (keys[i] ^ e) == key ? e : 0;
+    }
+
+    /** Stores a result for {@code key}, replacing whatever shared its slot. */
+    public void store(long key, int score, int bound, int move, int depth) {
+        long e = pack(score, bound, move, depth);
+        int i = (int) key & mask;
+        entries[i] = e;
+        keys[i] = key ^ e;
+    }
+
+    public void clear() {
+        java.util.Arrays.fill(keys, 0);
+        java.util.Arrays.fill(entries, 0);
+    }
+
+    // layout: score (16 bits, signed) | move (8) | depth (8) | bound (2); bound 0 never occurs, so 0 is "no entry"
+    static long pack(int score, int bound, int move, int depth) {
+        return ((long) (score & 0xFFFF) << 18) | ((long) (move & 0xFF) << 10) | ((long) (depth & 0xFF) << 2) | bound;
+    }
+
+    public static int score(long entry) { return (short) (entry >>> 18); }
+    public static int move(long entry) { return (int) (entry >>> 10) & 0xFF; }
+    public static int depth(long entry) { return (int) (entry >>> 2) & 0xFF; }
+    public static int bound(long entry) { return (int) entry & 3; }
+}